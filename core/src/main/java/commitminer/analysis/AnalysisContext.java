@@ -0,0 +1,121 @@
+package commitminer.analysis;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import commitminer.analysis.annotation.AnnotationFactBase;
+import commitminer.analysis.options.Options;
+import commitminer.cfd.CFDContextCache;
+
+/**
+ * Holds the state for one analysis pass over a commit: the options for the
+ * pass and the annotation fact bases that the pass fills.
+ *
+ * A context is confined to the thread that runs the pass. Because nothing is
+ * shared between contexts, several commits (or several passes over the same
+ * commit) can be analyzed at once in the same JVM. The exception is a
+ * {@code CFDContextCache}, which may be shared by passes over the same commit
+ * as long as those passes run one after the other.
+ */
+public class AnalysisContext {
+
+	/** The context of the pass running on the current thread. **/
+	private static final ThreadLocal<AnalysisContext> current = new ThreadLocal<AnalysisContext>();
+
+	/** The options used when no context is bound to the current thread. **/
+	private static final Options defaultOptions = new Options();
+
+	/** The options for this pass. **/
+	private Options options;
+
+	/** The annotations for each file that is analyzed in this pass. **/
+	private Map<SourceCodeFileChange, AnnotationFactBase> annotationFactBases;
+
+	/** Control flow differencing results, which may be shared with other
+	 * passes over the same commit. May be {@code null}. **/
+	private CFDContextCache cfdContextCache;
+
+	/**
+	 * @param options The options for this pass.
+	 */
+	public AnalysisContext(Options options) {
+		this(options, null);
+	}
+
+	/**
+	 * @param options The options for this pass.
+	 * @param cfdContextCache Control flow differencing results to share with
+	 * 		  other passes over the same commit.
+	 */
+	public AnalysisContext(Options options, CFDContextCache cfdContextCache) {
+		this.options = options;
+		this.annotationFactBases = new HashMap<SourceCodeFileChange, AnnotationFactBase>();
+		this.cfdContextCache = cfdContextCache;
+	}
+
+	/**
+	 * @return The options for this pass.
+	 */
+	public Options getOptions() {
+		return this.options;
+	}
+
+	/**
+	 * @return The control flow differencing results for this pass, or
+	 * 		   {@code null} if results are not cached.
+	 */
+	public CFDContextCache getCFDContextCache() {
+		return this.cfdContextCache;
+	}
+
+	/**
+	 * @param cfdContextCache The control flow differencing results for this
+	 * 		  pass, or {@code null} to stop caching results.
+	 */
+	public void setCFDContextCache(CFDContextCache cfdContextCache) {
+		this.cfdContextCache = cfdContextCache;
+	}
+
+	/**
+	 * @return The {@code AnnotationFactBase} for the given
+	 * 		   {@code SourceCodeFileChange}. The fact base is created if it
+	 * 		   does not yet exist.
+	 */
+	public AnnotationFactBase getAnnotationFactBase(SourceCodeFileChange sourceCodeFileChange) {
+		AnnotationFactBase factBase = this.annotationFactBases.get(sourceCodeFileChange);
+		if(factBase == null) {
+			factBase = new AnnotationFactBase(sourceCodeFileChange);
+			this.annotationFactBases.put(sourceCodeFileChange, factBase);
+		}
+		return factBase;
+	}
+
+	/**
+	 * @return The context bound to the current thread, or {@code null} if no
+	 * 		   analysis is running on the current thread.
+	 */
+	public static AnalysisContext getCurrent() {
+		return current.get();
+	}
+
+	/**
+	 * Binds a context to the current thread. Used by code that cannot have
+	 * the context passed to it (e.g., {@code equals} methods in the abstract
+	 * domain).
+	 * @param context The context to bind, or {@code null} to unbind.
+	 */
+	public static void setCurrent(AnalysisContext context) {
+		if(context == null) current.remove();
+		else current.set(context);
+	}
+
+	/**
+	 * @return The options of the context bound to the current thread, or the
+	 * 		   default options if no context is bound.
+	 */
+	public static Options getCurrentOptions() {
+		AnalysisContext context = current.get();
+		return context == null ? defaultOptions : context.options;
+	}
+
+}
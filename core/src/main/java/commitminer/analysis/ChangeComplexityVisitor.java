@@ -1,4 +1,4 @@
-package commitminer.learn.js.analysis;
+package commitminer.analysis;
 
 import org.mozilla.javascript.ast.AstNode;
 import org.mozilla.javascript.ast.AstRoot;
@@ -20,6 +20,7 @@ import org.mozilla.javascript.ast.VariableDeclaration;
 import org.mozilla.javascript.ast.WhileLoop;
 import org.mozilla.javascript.ast.WithStatement;
 
+import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode;
 import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode.ChangeType;
 
 /**
@@ -42,6 +43,20 @@ public class ChangeComplexityVisitor implements NodeVisitor {
 
 	}
 
+	/**
+	 * @param srcRoot The matched AST of the source file.
+	 * @param dstRoot The matched AST of the destination file.
+	 * @return The number of statements removed from the source file plus the
+	 * 		   number of statements inserted or updated in the destination file,
+	 * 		   or -1 if the ASTs are not JavaScript ASTs.
+	 */
+	public static int getChangedStatements(ClassifiedASTNode srcRoot, ClassifiedASTNode dstRoot) {
+		if(!(srcRoot instanceof AstRoot) || !(dstRoot instanceof AstRoot)) return -1;
+		ChangeComplexity src = getChangeComplexity((AstRoot)srcRoot, false);
+		ChangeComplexity dst = getChangeComplexity((AstRoot)dstRoot, true);
+		return src.removedStatements + dst.insertedStatements + dst.updatedStatements;
+	}
+
 	public ChangeComplexityVisitor(boolean dst) {
 		this.changeComplexity = new ChangeComplexity();
 		this.dst = dst;
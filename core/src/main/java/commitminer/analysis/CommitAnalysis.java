@@ -8,6 +8,8 @@ import org.deri.iris.api.basics.IPredicate;
 import org.deri.iris.storage.IRelation;
 
 import commitminer.analysis.factories.IDomainAnalysisFactory;
+import commitminer.analysis.options.Options;
+import commitminer.cfd.CFDContextCache;
 
 /**
  * Gathers facts about one commit from various domains and runs queries in
@@ -29,23 +31,76 @@ public class CommitAnalysis {
 		this.domainAnalysisFactories = domainAnalysisFactories;
 	}
 
+	/**
+	 * Analyzes the commit with the default options.
+	 * @param commit The commit we are analyzing.
+	 * @return The context that holds the results of the analysis.
+	 * @throws Exception
+	 */
+	public AnalysisContext analyze(Commit commit) throws Exception {
+		AnalysisContext context = new AnalysisContext(new Options());
+		this.analyze(commit, context);
+		return context;
+	}
+
+	/**
+	 * Control flow differences the files in the commit for each domain
+	 * analysis, without analyzing them. A later call to {@code analyze} with
+	 * a context that uses the same cache reuses the results.
+	 * @param commit The commit we are differencing.
+	 * @param cfdContextCache Stores the results of differencing.
+	 * @throws Exception
+	 */
+	public void difference(Commit commit, CFDContextCache cfdContextCache) throws Exception {
+		for(IDomainAnalysisFactory domainAnalysisFactory : domainAnalysisFactories) {
+			DomainAnalysis domainAnalysis = domainAnalysisFactory.newInstance();
+			for(SourceCodeFileChange sourceCodeFileChange : commit.sourceCodeFileChanges) {
+				domainAnalysis.difference(sourceCodeFileChange, cfdContextCache);
+			}
+		}
+	}
+
 	/**
 	 * Analyzes the commit and creates alerts.
 	 *
 	 * The commit is analyzed by each domain analysis. A database of facts is
 	 * stored and each domain analysis adds to the database.
 	 * @param commit The commit we are analyzing.
+	 * @param context The options and annotations for this pass. The context
+	 * 		  is bound to the current thread while the commit is analyzed.
 	 * @throws Exception
 	 */
-	public void analyze(Commit commit) throws Exception {
+	public void analyze(Commit commit, AnalysisContext context) throws Exception {
 
 		/* Initialize the fact base that will be filled by the domain analyses. */
 		Map<IPredicate, IRelation> facts = new HashMap<IPredicate, IRelation>();
 
-		/* Run each domain analysis on the commit. */
-		for(IDomainAnalysisFactory domainAnalysisFactory : domainAnalysisFactories) {
-			DomainAnalysis domainAnalysis = domainAnalysisFactory.newInstance();
-			domainAnalysis.analyze(commit, facts);
+		/* The domains share the control flow differencing results for the
+		 * commit, so each file is parsed, matched and converted to CFGs once.
+		 * If the caller did not provide a cache, the results are dropped when
+		 * the commit is finished. */
+		CFDContextCache cfdContextCache = null;
+		if(context.getCFDContextCache() == null) {
+			cfdContextCache = new CFDContextCache();
+			context.setCFDContextCache(cfdContextCache);
+		}
+
+		AnalysisContext outer = AnalysisContext.getCurrent();
+		AnalysisContext.setCurrent(context);
+
+		try {
+			/* Run each domain analysis on the commit. */
+			for(IDomainAnalysisFactory domainAnalysisFactory : domainAnalysisFactories) {
+				DomainAnalysis domainAnalysis = domainAnalysisFactory.newInstance();
+				domainAnalysis.analyze(commit, facts, context);
+			}
+		}
+		finally {
+			AnalysisContext.setCurrent(outer);
+			if(cfdContextCache != null) {
+				cfdContextCache.clear();
+				context.setCFDContextCache(null);
+			}
 		}
 
 	}
@@ -1,5 +1,7 @@
 package commitminer.analysis;
 
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 
@@ -10,6 +12,7 @@ import org.mozilla.javascript.EvaluatorException;
 
 import commitminer.analysis.factories.ISourceCodeFileAnalysisFactory;
 import commitminer.cfd.CFDContext;
+import commitminer.cfd.CFDContextCache;
 import commitminer.cfd.ControlFlowDifferencing;
 import commitminer.cfg.CFGFactory;
 
@@ -58,15 +61,16 @@ public class DomainAnalysis {
 	 *
 	 * @param commit The commit being analyzed.
 	 * @param facts The database of facts the domain analysis will add to.
+	 * @param context The options and annotations for this analysis pass.
 	 * @throws Exception when an error occurs during domain analysis.
 	 */
-	public void analyze(Commit commit, Map<IPredicate, IRelation> facts) throws Exception {
+	public void analyze(Commit commit, Map<IPredicate, IRelation> facts, AnalysisContext context) throws Exception {
 		
 		StopWatch commitTimer = new StopWatch();
 		commitTimer.start();
 
 		/* Analyze the commit before the files are analyzed. */
-		if(!preAnalysis(commit, facts)) return;
+		if(!preAnalysis(commit, facts, context)) return;
 
 		/* Iterate through the files in the commit and run the
 		 * SourceCodeFileAnalysis on each of them. */
@@ -74,7 +78,7 @@ public class DomainAnalysis {
 			StopWatch fileTimer = new StopWatch();
 			fileTimer.start();
 
-			this.analyzeFile(sourceCodeFileChange, facts);
+			this.analyzeFile(sourceCodeFileChange, facts, context);
 
 			fileTimer.stop();
 			
@@ -84,7 +88,7 @@ public class DomainAnalysis {
 		}
 
 		/* Analyze the commit after the files are analyzed. */
-		postAnalysis(commit, facts);
+		postAnalysis(commit, facts, context);
 		
 		/* Stop the commit analysis timer. */
 		commitTimer.stop();
@@ -97,9 +101,10 @@ public class DomainAnalysis {
 	 * @return {@code true} to continue the analysis, {@code false} to abort.
 	 * @param commit The commit being analyzed.
 	 * @param facts The database of facts the domain analysis will add to.
+	 * @param context The options and annotations for this analysis pass.
 	 * @throws Exception when an error occurs during domain analysis.
 	 */
-	protected boolean preAnalysis(Commit commit, Map<IPredicate, IRelation> facts) throws Exception {
+	protected boolean preAnalysis(Commit commit, Map<IPredicate, IRelation> facts, AnalysisContext context) throws Exception {
 		return true;
 	}
 
@@ -108,9 +113,36 @@ public class DomainAnalysis {
 	 * Override to run a custom post-file analysis.
 	 * @param commit The commit being analyzed.
 	 * @param facts The database of facts the domain analysis will add to.
+	 * @param context The options and annotations for this analysis pass.
 	 * @throws Exception when an error occurs during domain analysis.
 	 */
-	protected void postAnalysis(Commit commit, Map<IPredicate, IRelation> facts) throws Exception { }
+	protected void postAnalysis(Commit commit, Map<IPredicate, IRelation> facts, AnalysisContext context) throws Exception { }
+
+	/**
+	 * Control flow differences a file (parses, matches and builds the CFGs)
+	 * and stores the results in the cache, without running the analysis.
+	 * This lets the differencing of a commit run ahead of its analysis.
+	 * @param sourceCodeFileChange The source code file change information.
+	 * @param cache Stores the results of differencing.
+	 */
+	public void difference(SourceCodeFileChange sourceCodeFileChange,
+						   CFDContextCache cache) throws Exception {
+
+		/* Domains that do not build CFGs (e.g., line diff) have nothing to
+		 * difference ahead of time. */
+		if(cfgFactory == null) return;
+
+		/* Files that were screened out are not matched. */
+		if(sourceCodeFileChange.screened != null) return;
+
+		/* Get the file extension. */
+		String fileExtension = getSourceCodeFileExtension(sourceCodeFileChange.buggyFile, sourceCodeFileChange.repairedFile);
+
+		if(fileExtension != null && cfgFactory.acceptsExtension(fileExtension)) {
+			this.getCFDContext(sourceCodeFileChange, cache);
+		}
+
+	}
 
 	/**
 	 * Performs AST-differencing and launches the analysis of the pre-commit/post-commit
@@ -118,56 +150,92 @@ public class DomainAnalysis {
 	 *
 	 * @param sourceCodeFileChange The source code file change information.
 	 * @param facts Stores the facts from this analysis.
+	 * @param context The options and annotations for this analysis pass.
 	 * @param preProcess Set to true to enable AST pre-processing.
 	 * @param srcAnalysisFactory The analysis to run on the buggy file.
 	 * @param dstAnalysisClass The analysis to run on the repaired file.
 	 */
 	protected void analyzeFile(SourceCodeFileChange sourceCodeFileChange,
-							   Map<IPredicate, IRelation> facts) throws Exception {
+							   Map<IPredicate, IRelation> facts,
+							   AnalysisContext context) throws Exception {
 
 		/* Get the file extension. */
 		String fileExtension = getSourceCodeFileExtension(sourceCodeFileChange.buggyFile, sourceCodeFileChange.repairedFile);
 
-		/* Difference the files and analyze if they are an extension we handle. */
-		if(fileExtension != null && cfgFactory.acceptsExtension(fileExtension)) {
+		/* Difference the files and analyze if they are an extension we handle
+		 * and they were not screened out. */
+		if(fileExtension != null && cfgFactory.acceptsExtension(fileExtension)
+				&& sourceCodeFileChange.screened == null) {
 
-			/* Control flow difference the files. */
-			ControlFlowDifferencing cfd = null;
-			try {
-				String[] args = preProcess ? new String[] {sourceCodeFileChange.buggyFile, sourceCodeFileChange.repairedFile, "-pp"}
-									: new String[] {sourceCodeFileChange.buggyFile, sourceCodeFileChange.repairedFile};
-				cfd = new ControlFlowDifferencing(cfgFactory, args, sourceCodeFileChange.buggyCode, sourceCodeFileChange.repairedCode);
-			}
-			catch(ArrayIndexOutOfBoundsException e) {
-				System.err.println("ArrayIndexOutOfBoundsException: possibly caused by empty file.");
-				e.printStackTrace();
-				return;
-			}
-			catch(EvaluatorException e) {
-				System.err.println("Evaluator exception: " + e.getMessage());
-				return;
-			}
-			catch(Exception e) {
-				throw e;
-			}
-
-			/* Get the results of the control flow differencing. The results
-			 * include an analysis context: the source and destination ASTs
-			 * and CFGs. */
-			CFDContext cfdContext = cfd.getContext();
+			/* Control flow difference the files, unless another analysis of
+			 * this commit has already done so. The results include an
+			 * analysis context: the source and destination ASTs and CFGs. */
+			CFDContext cfdContext = this.getCFDContext(sourceCodeFileChange, context.getCFDContextCache());
+			if(cfdContext == null) return;
 
 			/* Build the analyzers with reflection. */
 //			SourceCodeFileAnalysis srcAnalysis = this.srcAnalysisFactory.newInstance();
 			SourceCodeFileAnalysis dstAnalysis = this.srcAnalysisFactory.newInstance();
 
 			/* Run the analysis. */
-//			srcAnalysis.analyze(sourceCodeFileChange, facts, cfdContext.srcScript, cfdContext.srcCFGs);
-			dstAnalysis.analyze(sourceCodeFileChange, facts, cfdContext.dstScript, cfdContext.dstCFGs);
+//			srcAnalysis.analyze(sourceCodeFileChange, facts, cfdContext.srcScript, cfdContext.srcCFGs, context);
+			dstAnalysis.analyze(sourceCodeFileChange, facts, cfdContext.dstScript, cfdContext.dstCFGs, cfdContext.lazyCFGs, context);
 
 		}
 
 	}
 
+	/**
+	 * Looks up the control flow differencing results for a file, or control
+	 * flow differences the file if they are not in the cache.
+	 * @param sourceCodeFileChange The source code file change information.
+	 * @param cache The control flow differencing results for the commit. May
+	 * 		  be {@code null}.
+	 * @return The results of control flow differencing, or {@code null} if
+	 * 		   the files could not be differenced.
+	 */
+	private CFDContext getCFDContext(SourceCodeFileChange sourceCodeFileChange,
+									 CFDContextCache cache) throws Exception {
+
+		CFDContext cfdContext = null;
+		try {
+			if(cache != null) cfdContext = cache.get(sourceCodeFileChange, cfgFactory, preProcess);
+			if(cfdContext == null) {
+				List<String> args = new LinkedList<String>();
+				args.add(sourceCodeFileChange.buggyFile);
+				args.add(sourceCodeFileChange.repairedFile);
+				if(preProcess) args.add("-pp");
+				if(cache != null && cache.getMatchPolicy() != null) {
+					args.add("-mp");
+					args.add(cache.getMatchPolicy().toString());
+				}
+				if(cache != null && cache.isChangeScoped()) args.add("-cs");
+				if(cache != null && cache.isParallelFunctions()) args.add("-pf");
+				ControlFlowDifferencing cfd = new ControlFlowDifferencing(cfgFactory, args.toArray(new String[args.size()]),
+						sourceCodeFileChange.buggyCode, sourceCodeFileChange.repairedCode,
+						sourceCodeFileChange.buggyBlobID, sourceCodeFileChange.repairedBlobID,
+						cache == null ? null : cache.getParseCache());
+				cfdContext = cfd.getContext();
+				sourceCodeFileChange.matchStrategy = cfdContext.matchStrategy;
+				if(cache != null && cache.isCountStatements() && sourceCodeFileChange.changedStatements < 0)
+					sourceCodeFileChange.changedStatements = ChangeComplexityVisitor.getChangedStatements(cfdContext.srcScript, cfdContext.dstScript);
+				if(cache != null) cache.put(sourceCodeFileChange, cfgFactory, preProcess, cfdContext);
+			}
+		}
+		catch(ArrayIndexOutOfBoundsException e) {
+			System.err.println("ArrayIndexOutOfBoundsException: possibly caused by empty file.");
+			e.printStackTrace();
+			return null;
+		}
+		catch(EvaluatorException e) {
+			System.err.println("Evaluator exception: " + e.getMessage());
+			return null;
+		}
+
+		return cfdContext;
+
+	}
+
 	/**
 	 * @param preCommitPath The path of the file before the commit.
 	 * @param postCommitPath The path of the file after the commit.
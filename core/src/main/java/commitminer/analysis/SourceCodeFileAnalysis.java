@@ -6,6 +6,7 @@ import java.util.Map;
 import org.deri.iris.api.basics.IPredicate;
 import org.deri.iris.storage.IRelation;
 
+import commitminer.cfd.LazyCFGs;
 import commitminer.cfg.CFG;
 
 import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode;
@@ -24,10 +25,31 @@ public abstract class SourceCodeFileAnalysis {
 	 * @param root The script.
 	 * @param cfgs The list of CFGs in the script (one for each function plus
 	 * 			   one for the script).
+	 * @param context The options and annotations for this analysis pass.
 	 */
 	public abstract void analyze(SourceCodeFileChange sourceCodeFileChange,
 								 Map<IPredicate, IRelation> facts,
 								 ClassifiedASTNode root,
-								 List<CFG> cfgs) throws Exception;
+								 List<CFG> cfgs,
+								 AnalysisContext context) throws Exception;
+
+	/**
+	 * Perform a single-file analysis on CFGs that may not all have been built
+	 * (see {@code --change-scoped}). By default, the remaining CFGs are built
+	 * before the analysis. Analyses that only need some of the CFGs should
+	 * override this method and build them with {@code lazyCFGs}.
+	 * @param cfgs The CFGs that have been built so far.
+	 * @param lazyCFGs Builds the remaining CFGs, or {@code null} if every
+	 * 				   CFG has been built.
+	 */
+	public void analyze(SourceCodeFileChange sourceCodeFileChange,
+						Map<IPredicate, IRelation> facts,
+						ClassifiedASTNode root,
+						List<CFG> cfgs,
+						LazyCFGs lazyCFGs,
+						AnalysisContext context) throws Exception {
+		if(lazyCFGs != null) lazyCFGs.buildAll();
+		this.analyze(sourceCodeFileChange, facts, root, cfgs, context);
+	}
 
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package commitminer.analysis;
 
 import java.util.regex.Matcher;
 
+import commitminer.cfd.MatchPolicy;
+
 /**
  * Stores the information that represents a change to a source code file.
  *
@@ -25,6 +27,22 @@ public class SourceCodeFileChange {
 	/** The the time spent analyzing the file. **/
 	public long analysisRuntime;
 
+	/** The id of the blob before the commit, or null if it is not known. **/
+	public String buggyBlobID;
+
+	/** The id of the blob after the commit, or null if it is not known. **/
+	public String repairedBlobID;
+
+	/** The number of modified statements, or -1 if the file has not been
+	 * matched. **/
+	public int changedStatements;
+
+	/** Why the file is not flow analyzed, or null if it is. **/
+	public String screened;
+
+	/** How the ASTs were matched, or null if they have not been matched. **/
+	public MatchPolicy.Strategy matchStrategy;
+
 	/**
 	 * @param buggyFile The path to the source file before the commit.
 	 * @param repairedFile The path to the source file after the commit.
@@ -38,6 +56,7 @@ public class SourceCodeFileChange {
 		this.buggyCode = buggyCode;
 		this.repairedCode = repairedCode;
 		this.analysisRuntime = -1;
+		this.changedStatements = -1;
 	}
 
 	/**
@@ -1,8 +1,6 @@
 package commitminer.analysis.annotation;
 
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -18,30 +16,13 @@ import commitminer.factbase.FactBase;
  */
 public class AnnotationFactBase extends FactBase {
 	
-	private static Map<SourceCodeFileChange, AnnotationFactBase> instances = new HashMap<SourceCodeFileChange, AnnotationFactBase>();
-
 	private SortedSet<Annotation> annotations;
 	
 	/**
-	 * @return The AnnotationFactBase for the given {@code SourceCodeFileChange}.
-	 */
-	public static AnnotationFactBase getInstance(SourceCodeFileChange sourceCodeFileChange) {
-		AnnotationFactBase instance = instances.get(sourceCodeFileChange);
-		if(instance == null) {
-			instance = new AnnotationFactBase(sourceCodeFileChange);
-			instances.put(sourceCodeFileChange, instance);
-		}
-		return instance;
-	}
-	
-	/**
-	 * Removes the {@code AnnotationFactBase} for the given {@code SourceCodeFileChange}.
+	 * Fact bases are created and stored by the {@code AnalysisContext} for
+	 * the analysis pass (see {@code AnalysisContext.getAnnotationFactBase}).
 	 */
-	public static void removeInstance(SourceCodeFileChange sourceCodeFileChange) {
-		instances.remove(sourceCodeFileChange);
-	}
-	
-	private AnnotationFactBase(SourceCodeFileChange sourceCodeFileChange) {
+	public AnnotationFactBase(SourceCodeFileChange sourceCodeFileChange) {
 
 		super(sourceCodeFileChange);
 
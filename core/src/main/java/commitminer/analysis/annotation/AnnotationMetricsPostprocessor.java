@@ -5,6 +5,8 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 
@@ -12,7 +14,11 @@ import commitminer.analysis.Commit;
 import commitminer.analysis.SourceCodeFileChange;
 
 public class AnnotationMetricsPostprocessor {
-	
+
+	/** The number of columns that identify a row (project, commit, file,
+	 * tier, matcher). **/
+	private static final int KEY_COLUMNS = 5;
+
 	private String path;
 
 	/**
@@ -122,6 +128,18 @@ public class AnnotationMetricsPostprocessor {
 	public void process(Commit commit, SourceCodeFileChange file, 
 						AnnotationFactBase gumTreeFactBase,
 						AnnotationFactBase meyersFactBase) throws IOException {
+		writeRow(getRow(commit, file, gumTreeFactBase, meyersFactBase));
+	}
+
+	/**
+	 * Computes the metrics row for a file without writing it. This lets
+	 * concurrent analyses compute their rows independently and have them
+	 * written in order.
+	 * @return The row that {@code process} would write to the output file.
+	 */
+	public String getRow(Commit commit, SourceCodeFileChange file, 
+						 AnnotationFactBase gumTreeFactBase,
+						 AnnotationFactBase meyersFactBase) throws IOException {
 
 		CommitMetrics metrics = new CommitMetrics(commit, file);
 
@@ -142,8 +160,8 @@ public class AnnotationMetricsPostprocessor {
 		
 		processGumtreeAnnotations(commit, file, gumTreeFactBase, metrics);
 
-		writeRow(metrics);
 		System.out.println(metrics.toString());
+		return metrics.toRow();
 		
 	}
 
@@ -202,8 +220,19 @@ public class AnnotationMetricsPostprocessor {
 		
 	}
 
-	public void writeRow(CommitMetrics metrics) throws IOException {
-		Files.write(Paths.get(path), metrics.toRow().getBytes(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	/**
+	 * Attributes a row to a different project. Used when a commit that is
+	 * shared by several projects (e.g., forks) is only analyzed once.
+	 * @param row A row created by {@code CommitMetrics.toRow}.
+	 * @param projectID The project to attribute the row to.
+	 * @return The row with its project column replaced.
+	 */
+	public static String withProject(String row, String projectID) {
+		return "'" + projectID + "'" + row.substring(row.indexOf(", '"));
+	}
+
+	public synchronized void writeRow(String row) throws IOException {
+		Files.write(Paths.get(path), row.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
 	}
 	
 	public void writeHeader() throws IOException{
@@ -211,9 +240,33 @@ public class AnnotationMetricsPostprocessor {
 	}
 	
 	public String getHeader() {
+		return header();
+	}
+
+	/**
+	 * Reads the metrics in a row. The first columns (project, commit, file,
+	 * tier and matcher) are not metrics. The file name may contain the column
+	 * separator, so the metrics are read from the end of the row.
+	 * @param row A row created by {@code CommitMetrics.toRow}.
+	 * @return The value of each metric, by column name (e.g., "Runtime").
+	 */
+	public static Map<String, Long> getMetrics(String row) {
+		String[] names = header().trim().split(", ");
+		String[] values = row.trim().split(", ");
+		Map<String, Long> metrics = new LinkedHashMap<String, Long>();
+		for(int i = KEY_COLUMNS; i < names.length; i++) {
+			String value = values[values.length - names.length + i];
+			metrics.put(names[i], Long.parseLong(value.trim()));
+		}
+		return metrics;
+	}
+
+	private static String header() {
 		String s = "ProjectID";
 		s += ", CommitID";
 		s += ", File";
+		s += ", Tier";
+		s += ", Matcher";
 		s += ", Runtime";
 		s += ", TotalLines";
 		s += ", DataDepDef";
@@ -335,6 +388,8 @@ public class AnnotationMetricsPostprocessor {
 			s += "Project:       " + commit.projectID + "\n";
 			s += "Commit:        " + commit.repairedCommitID + "\n";
 			s += "File:          " + file.repairedFile + "\n";
+			s += "Tier:          " + (file.screened == null ? "FLOW" : "SCREENED " + file.screened) + "\n";
+			s += "Matcher:       " + (file.matchStrategy == null ? "NONE" : file.matchStrategy) + "\n";
 			s += "Runtime (ms):  " + file.analysisRuntime + "\n";
 			s += "---------------\n";
 			s += "Total Lines:   " + totLin + "\n";
@@ -399,6 +454,8 @@ public class AnnotationMetricsPostprocessor {
 			String s = "'" + commit.projectID + "'";
 			s += ", '" + commit.repairedCommitID + "'";
 			s += ", '" + file.repairedFile + "'";
+			s += ", '" + (file.screened == null ? "FLOW" : "SCREENED " + file.screened) + "'";
+			s += ", '" + (file.matchStrategy == null ? "NONE" : file.matchStrategy) + "'";
 			s += ", " + file.analysisRuntime;
 			s += ", " + totLin;
 			s += ", " + datDef;
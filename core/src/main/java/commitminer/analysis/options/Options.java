@@ -2,20 +2,21 @@ package commitminer.analysis.options;
 
 /**
  * Contains analysis options.
+ *
+ * Options are held by an {@code AnalysisContext}, so each analysis pass
+ * may use different options.
  */
 public class Options {
 	
-	private static Options instance;
-	
 	private DiffMethod diffMethod;
 	private ChangeImpact changeImpact;
 	
-	private Options() {
+	public Options() {
 		this.diffMethod = DiffMethod.GUMTREE;
 		this.changeImpact = ChangeImpact.MULTIDIFF;
 	}
 
-	private Options(DiffMethod diffMethod, ChangeImpact changeImpact) {
+	public Options(DiffMethod diffMethod, ChangeImpact changeImpact) {
 		this.diffMethod = diffMethod;
 		this.changeImpact = changeImpact;
 	}
@@ -23,31 +24,11 @@ public class Options {
 	public DiffMethod getDiffMethod() {
 		return this.diffMethod;
 	}
-
-	public void setDiffMethod(Options.DiffMethod diffMethod) {
-		this.diffMethod = diffMethod;
-	}
 	
 	public ChangeImpact getChangeImpact() {
 		return this.changeImpact;
 	}
 	
-	/**
-	 * @return the singleton {@code Options}.
-	 */
-	public static Options getInstance() {
-		if(instance == null) instance = new Options();
-		return instance;
-	}
-
-	/**
-	 * @return the singleton {@code Options}.
-	 */
-	public static Options createInstance(DiffMethod diffMethod, ChangeImpact changeImpact) {
-		if(instance == null) instance = new Options(diffMethod, changeImpact);
-		return instance;
-	}
-	
 	/**
 	 * The structural change analysis strategy.
 	 */
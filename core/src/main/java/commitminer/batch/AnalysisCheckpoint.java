@@ -0,0 +1,159 @@
+package commitminer.batch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records which commit pairs of a project have been analyzed, so that an
+ * analysis can be resumed after it is interrupted, or re-run after a pull
+ * without analyzing the old history again.
+ *
+ * The checkpoint is a text file. The first line identifies the analysis
+ * configuration. Each following line is the id of an analyzed (bug fixing)
+ * commit, appended after the results for the commit have been written.
+ * Commits that could not be analyzed are not recorded, so they are tried
+ * again when the run is resumed.
+ *
+ * Each configuration has its own checkpoint file, named by the SHA-1 of the
+ * configuration, so a run with one configuration does not discard the
+ * checkpoint of another. If the first line of the file does not match the
+ * configuration, the checkpoint is discarded and every commit is analyzed
+ * again.
+ *
+ * A commit is recorded after its results are written, so a run that is
+ * killed between the two may write the results for that commit twice.
+ */
+public class AnalysisCheckpoint {
+
+	/** The prefix of the checkpoint file names in the project's .git directory. **/
+	public static final String FILE_NAME = "commitminer-checkpoint";
+
+	/** The checkpoint file. **/
+	private Path path;
+
+	/** The ids of the commits that have been analyzed. **/
+	private Set<String> analyzed;
+
+	/** Appends commit ids to the checkpoint file. **/
+	private BufferedWriter writer;
+
+	/**
+	 * Opens the checkpoint, creating it if it does not exist or if it was
+	 * written for a different configuration.
+	 * @param path The checkpoint file.
+	 * @param configuration Identifies the analysis configuration.
+	 * @throws IOException when the checkpoint cannot be read or created.
+	 */
+	public AnalysisCheckpoint(Path path, String configuration) throws IOException {
+		this(path, configuration, true);
+	}
+
+	/**
+	 * Opens the checkpoint.
+	 * @param path The checkpoint file.
+	 * @param configuration Identifies the analysis configuration.
+	 * @param keep If false, the commits recorded by an earlier run are
+	 * 		  discarded (i.e., the run starts over, but is still recorded so
+	 * 		  that it can be resumed).
+	 * @throws IOException when the checkpoint cannot be read or created.
+	 */
+	public AnalysisCheckpoint(Path path, String configuration, boolean keep) throws IOException {
+
+		this.path = path;
+		this.analyzed = new HashSet<String>();
+
+		boolean valid = false;
+		if(keep && Files.exists(path)) {
+			try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+				valid = configuration.equals(reader.readLine());
+				String line;
+				while(valid && (line = reader.readLine()) != null) {
+					if(!line.isEmpty()) this.analyzed.add(line);
+				}
+			}
+		}
+
+		if(valid) {
+			this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+					StandardOpenOption.APPEND);
+		}
+		else {
+			/* Start a new checkpoint for this configuration. */
+			this.analyzed.clear();
+			this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			this.writer.write(configuration + "\n");
+			this.writer.flush();
+		}
+
+	}
+
+	/**
+	 * @param directory The directory that holds the checkpoints (i.e., the
+	 * 		  project's .git directory).
+	 * @param configuration Identifies the analysis configuration.
+	 * @return The checkpoint file for the configuration.
+	 */
+	public static Path getPath(Path directory, String configuration) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(configuration.getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder(FILE_NAME + "-");
+			for(byte b : hash) name.append(String.format("%02x", b));
+			return directory.resolve(name.toString());
+		} catch (NoSuchAlgorithmException e) {
+			return directory.resolve(FILE_NAME);
+		}
+	}
+
+	/**
+	 * @param commitID The id of the bug fixing commit.
+	 * @return True if the commit was analyzed by an earlier run.
+	 */
+	public synchronized boolean isAnalyzed(String commitID) {
+		return this.analyzed.contains(commitID);
+	}
+
+	/**
+	 * @return The number of commits that have been analyzed.
+	 */
+	public synchronized int size() {
+		return this.analyzed.size();
+	}
+
+	/**
+	 * Records that a commit has been analyzed. The record is flushed
+	 * immediately so that it survives if the run is killed.
+	 * @param commitID The id of the bug fixing commit.
+	 * @throws IOException when the checkpoint cannot be written.
+	 */
+	public synchronized void record(String commitID) throws IOException {
+		if(!this.analyzed.add(commitID)) return;
+		this.writer.write(commitID + "\n");
+		this.writer.flush();
+	}
+
+	/**
+	 * @return The checkpoint file.
+	 */
+	public Path getPath() {
+		return this.path;
+	}
+
+	/**
+	 * Closes the checkpoint file.
+	 */
+	public synchronized void close() throws IOException {
+		this.writer.close();
+	}
+
+}
@@ -0,0 +1,285 @@
+package commitminer.batch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import commitminer.analysis.SourceCodeFileChange;
+import commitminer.analysis.annotation.Annotation;
+import commitminer.analysis.annotation.AnnotationFactBase;
+import commitminer.analysis.annotation.DependencyIdentifier;
+import commitminer.cfd.MatchPolicy;
+
+/**
+ * A persistent, on-disk memo of the analysis results for a file change.
+ *
+ * The same pair of blobs (the file before and after a commit) appears many
+ * times across a project's history and across forks of a project (e.g.,
+ * reverts, cherry-picks, merges and vendored copies). Because the analysis
+ * of a file change only depends on the contents of the two blobs and the
+ * analysis configuration, the results can be stored once and replayed
+ * whenever the pair is seen again.
+ *
+ * Each entry is stored in its own file, named by the SHA-1 of the
+ * configuration and the two blob ids. Entries are written to a temporary
+ * file and then moved into place, so several analyses (or several
+ * processes) can share a memo directory.
+ */
+public class AnalysisMemo {
+
+	/** Incremented when the format of an entry, or the way the entries
+	 * are computed, changes. **/
+	private static final String VERSION = "3";
+
+	/** The directory that stores the memo entries. **/
+	private Path directory;
+
+	/** The number of file changes that were replayed from the memo. **/
+	private AtomicLong hits;
+
+	/** The number of file changes that had to be analyzed. **/
+	private AtomicLong misses;
+
+	/**
+	 * @param directory The directory that stores the memo entries. The
+	 * 		  directory is created if it does not exist.
+	 * @throws IOException when the directory cannot be created.
+	 */
+	public AnalysisMemo(String directory) throws IOException {
+		this.directory = Paths.get(directory);
+		this.hits = new AtomicLong(0);
+		this.misses = new AtomicLong(0);
+		Files.createDirectories(this.directory);
+	}
+
+	/**
+	 * @param configuration Identifies the analysis that produced the results
+	 * 		  (e.g., the analysis factory and options).
+	 * @param file The file change.
+	 * @return The key for the file change, or {@code null} if the blob ids of
+	 * 		   the file change are not known.
+	 */
+	public String getKey(String configuration, SourceCodeFileChange file) {
+
+		if(file.buggyBlobID == null || file.repairedBlobID == null) return null;
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			String id = VERSION + "\n" + configuration + "\n" + file.buggyBlobID + "\n" + file.repairedBlobID;
+			byte[] hash = digest.digest(id.getBytes(StandardCharsets.UTF_8));
+			StringBuilder key = new StringBuilder();
+			for(byte b : hash) key.append(String.format("%02x", b));
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+
+	}
+
+	/**
+	 * Looks up the results for a file change and counts the hit or miss.
+	 * @param key The key from {@code getKey}.
+	 * @return The stored results, or {@code null} if the file change has not
+	 * 		   been analyzed with this configuration.
+	 */
+	public Entry get(String key) {
+
+		Path path = this.getPath(key);
+		if(!Files.exists(path)) {
+			this.misses.incrementAndGet();
+			return null;
+		}
+
+		Entry entry = new Entry();
+		try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				switch(fields[0]) {
+				case "R":
+					entry.runtime = Long.parseLong(fields[1]);
+					break;
+				case "S":
+					entry.matchStrategy = MatchPolicy.Strategy.valueOf(fields[1]);
+					break;
+				case "G":
+					entry.gumtreeAnnotations.add(readAnnotation(fields));
+					break;
+				case "M":
+					entry.meyersAnnotations.add(readAnnotation(fields));
+					break;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			/* A damaged entry is treated as a miss and is overwritten. */
+			this.misses.incrementAndGet();
+			return null;
+		}
+
+		this.hits.incrementAndGet();
+		return entry;
+
+	}
+
+	/**
+	 * Stores the results for a file change.
+	 * @param key The key from {@code getKey}.
+	 * @param file The analyzed file change.
+	 * @param gumtreeFactBase The annotations from the GumTree pass.
+	 * @param meyersFactBase The annotations from the Meyers pass.
+	 * @throws IOException when the entry cannot be written.
+	 */
+	public void put(String key, SourceCodeFileChange file,
+					AnnotationFactBase gumtreeFactBase,
+					AnnotationFactBase meyersFactBase) throws IOException {
+
+		Path path = this.getPath(key);
+		Files.createDirectories(path.getParent());
+
+		Path tmp = Files.createTempFile(path.getParent(), key, ".tmp");
+		try(BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+			writer.write("R\t" + file.analysisRuntime + "\n");
+			if(file.matchStrategy != null) writer.write("S\t" + file.matchStrategy + "\n");
+			for(Annotation annotation : gumtreeFactBase.getAnnotations())
+				writer.write(writeAnnotation("G", annotation));
+			for(Annotation annotation : meyersFactBase.getAnnotations())
+				writer.write(writeAnnotation("M", annotation));
+		}
+
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+	}
+
+	/**
+	 * @return The number of file changes that were replayed from the memo.
+	 */
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * @return The number of file changes that were not found in the memo.
+	 */
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	/**
+	 * @return The path of the entry for the key. Entries are spread over
+	 * 		   sub-directories to keep directories small.
+	 */
+	private Path getPath(String key) {
+		return this.directory.resolve(key.substring(0, 2)).resolve(key.substring(2));
+	}
+
+	/**
+	 * @return A line that stores the annotation.
+	 */
+	private static String writeAnnotation(String pass, Annotation annotation) {
+		String s = pass;
+		s += "\t" + escape(annotation.label);
+		s += "\t" + annotation.line;
+		s += "\t" + annotation.absolutePosition;
+		s += "\t" + annotation.length;
+		for(DependencyIdentifier id : annotation.dependencyIDs) {
+			s += "\t" + escape(id.getAddress());
+		}
+		return s + "\n";
+	}
+
+	/**
+	 * @return The annotation stored in the fields of a line.
+	 */
+	private static Annotation readAnnotation(String[] fields) {
+		List<DependencyIdentifier> ids = new LinkedList<DependencyIdentifier>();
+		for(int i = 5; i < fields.length; i++) {
+			ids.add(new StoredDependencyIdentifier(unescape(fields[i])));
+		}
+		return new Annotation(unescape(fields[1]), ids,
+							  Integer.parseInt(fields[2]),
+							  Integer.parseInt(fields[3]),
+							  Integer.parseInt(fields[4]));
+	}
+
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	private static String unescape(String s) {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c == '\\' && i + 1 < s.length()) {
+				i++;
+				switch(s.charAt(i)) {
+				case 't': sb.append('\t'); break;
+				case 'n': sb.append('\n'); break;
+				case 'r': sb.append('\r'); break;
+				default: sb.append(s.charAt(i));
+				}
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * The stored results for a file change.
+	 */
+	public static class Entry {
+
+		/** The time spent analyzing the file when it was first analyzed. **/
+		public long runtime = -1;
+
+		/** How the ASTs were matched, or null if they were not matched. **/
+		public MatchPolicy.Strategy matchStrategy;
+
+		/** The annotations from the GumTree pass. **/
+		public List<Annotation> gumtreeAnnotations = new LinkedList<Annotation>();
+
+		/** The annotations from the Meyers pass. **/
+		public List<Annotation> meyersAnnotations = new LinkedList<Annotation>();
+
+		/**
+		 * @return A fact base containing the annotations.
+		 */
+		public static AnnotationFactBase toFactBase(SourceCodeFileChange file, List<Annotation> annotations) {
+			AnnotationFactBase factBase = new AnnotationFactBase(file);
+			for(Annotation annotation : annotations) factBase.registerAnnotationFact(annotation);
+			return factBase;
+		}
+
+	}
+
+	/**
+	 * A dependency identifier that was replayed from the memo. Only the
+	 * address of the original identifier is stored.
+	 */
+	private static class StoredDependencyIdentifier implements DependencyIdentifier {
+
+		private String address;
+
+		public StoredDependencyIdentifier(String address) {
+			this.address = address;
+		}
+
+		@Override
+		public String getAddress() {
+			return this.address;
+		}
+
+	}
+
+}
@@ -0,0 +1,290 @@
+package commitminer.batch;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import commitminer.analysis.Commit.Type;
+
+/**
+ * Runs the analysis of a project as a pipeline of stages connected by
+ * bounded queues (e.g., git I/O, then control flow differencing, then flow
+ * analysis, then post-processing). Each stage has its own threads, so
+ * I/O-bound stages overlap CPU-bound stages.
+ *
+ * The results are written on the calling thread in history order. The
+ * number of commits in the pipeline is bounded, so a slow commit does not
+ * cause the results of later commits to pile up in memory.
+ *
+ * The time each stage spends working, waiting for input and waiting for
+ * room in the next queue is logged at the end of the run. The stage with the
+ * most working time and the least waiting time is the bottleneck.
+ */
+class AnalysisPipeline {
+
+	protected static final Logger logger = LogManager.getLogger(AnalysisPipeline.class);
+
+	/** Marks the end of the input on a queue. **/
+	private static final CommitJob END = new CommitJob(-1, Triple.of("", "", Type.OTHER));
+
+	/** The stages in the order that commits visit them. **/
+	private List<StageRunner> stages;
+
+	/** Writes the results of a commit. Runs on the calling thread. **/
+	private Stage writer;
+
+	/** The capacity of each queue between stages. **/
+	private int capacity;
+
+	/**
+	 * @param capacity The capacity of each queue between stages.
+	 * @param writer Writes the results of a commit. Commits are written one
+	 * 		  at a time, in history order.
+	 */
+	public AnalysisPipeline(int capacity, Stage writer) {
+		this.stages = new LinkedList<StageRunner>();
+		this.writer = writer;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Adds a stage to the end of the pipeline.
+	 * @param name The name of the stage (for logging).
+	 * @param threads The number of threads that run the stage.
+	 * @param stage The work to do on each commit.
+	 */
+	public void addStage(String name, int threads, Stage stage) {
+		this.stages.add(new StageRunner(name, Math.max(1, threads), stage));
+	}
+
+	/**
+	 * Runs the commits through the pipeline.
+	 * @param commits The commit pairs to analyze.
+	 * @return The number of commit pairs that were analyzed.
+	 */
+	public int run(final Iterator<Triple<String, String, Type>> commits) throws InterruptedException {
+
+		/* Connect the stages. */
+		BlockingQueue<CommitJob> input = new ArrayBlockingQueue<CommitJob>(this.capacity);
+		BlockingQueue<CommitJob> queue = input;
+		for(StageRunner stage : this.stages) {
+			stage.input = queue;
+			queue = new ArrayBlockingQueue<CommitJob>(this.capacity);
+			stage.output = queue;
+		}
+		BlockingQueue<CommitJob> output = queue;
+
+		/* Bounds the number of commits between the source and the writer. */
+		int window = this.capacity * (this.stages.size() + 1);
+		for(StageRunner stage : this.stages) window += stage.threads;
+		Semaphore inFlight = new Semaphore(window);
+
+		List<Thread> threads = new LinkedList<Thread>();
+		threads.add(this.startSource(commits, input, inFlight));
+		for(StageRunner stage : this.stages) threads.addAll(stage.start());
+
+		int analyzed = 0;
+		try {
+
+			/* Write the results in history order. */
+			Map<Long, CommitJob> waiting = new HashMap<Long, CommitJob>();
+			long next = 0;
+			CommitJob job;
+			while((job = output.take()) != END) {
+				waiting.put(job.sequence, job);
+				while((job = waiting.remove(next)) != null) {
+					this.write(job);
+					inFlight.release();
+					analyzed++;
+					next++;
+				}
+			}
+
+		}
+		finally {
+			for(Thread thread : threads) thread.interrupt();
+		}
+
+		for(StageRunner stage : this.stages) stage.logStatistics();
+
+		return analyzed;
+
+	}
+
+	/**
+	 * Writes the results of a commit. If a stage failed, the error is logged
+	 * and the result is marked as failed before it is written, as it is when
+	 * the commits are analyzed one at a time.
+	 */
+	private void write(CommitJob job) {
+		if(job.error != null) {
+			logger.error("[ERROR] {}, {}", job.pair.getMiddle(), job.error.getMessage());
+			job.result.failed = true;
+		}
+		try {
+			this.writer.process(job);
+		} catch (Exception e) {
+			logger.error("[ERROR] {}, {}", job.pair.getMiddle(), e.getMessage());
+		}
+	}
+
+	/**
+	 * Starts the thread that walks the history and feeds the first stage.
+	 */
+	private Thread startSource(final Iterator<Triple<String, String, Type>> commits,
+							   final BlockingQueue<CommitJob> input,
+							   final Semaphore inFlight) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				long sequence = 0;
+				try {
+					try {
+						while(commits.hasNext()) {
+							inFlight.acquire();
+							input.put(new CommitJob(sequence, commits.next()));
+							sequence++;
+						}
+					}
+					catch(RuntimeException e) {
+						logger.error("[ERROR] Could not walk the history: {}", e.getMessage());
+					}
+					input.put(END);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}, "pipeline-source");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * The work done on a commit by one stage of the pipeline.
+	 */
+	public interface Stage {
+		void process(CommitJob job) throws Exception;
+	}
+
+	/**
+	 * Runs a stage on its threads and keeps statistics about the stage.
+	 */
+	private static class StageRunner {
+
+		private String name;
+		private int threads;
+		private Stage stage;
+
+		private BlockingQueue<CommitJob> input;
+		private BlockingQueue<CommitJob> output;
+
+		/** The number of workers that have not seen the end of the input. **/
+		private AtomicInteger running;
+
+		/** The number of commits processed by the stage. **/
+		private AtomicLong processed = new AtomicLong();
+
+		/** The time spent processing commits (in nanoseconds). **/
+		private AtomicLong busy = new AtomicLong();
+
+		/** The time spent waiting for commits from the previous stage. **/
+		private AtomicLong starved = new AtomicLong();
+
+		/** The time spent waiting for room in the next queue. **/
+		private AtomicLong blocked = new AtomicLong();
+
+		public StageRunner(String name, int threads, Stage stage) {
+			this.name = name;
+			this.threads = threads;
+			this.stage = stage;
+		}
+
+		/**
+		 * Starts the threads for the stage.
+		 */
+		public List<Thread> start() {
+			this.running = new AtomicInteger(this.threads);
+			List<Thread> workers = new LinkedList<Thread>();
+			for(int i = 0; i < this.threads; i++) {
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							work();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}, "pipeline-" + this.name + "-" + i);
+				thread.setDaemon(true);
+				thread.start();
+				workers.add(thread);
+			}
+			return workers;
+		}
+
+		/**
+		 * Processes commits until the end of the input. The end marker is put
+		 * back for the other workers, and the last worker to finish passes it
+		 * on to the next stage.
+		 */
+		private void work() throws InterruptedException {
+			while(true) {
+
+				long start = System.nanoTime();
+				CommitJob job = this.input.take();
+				this.starved.addAndGet(System.nanoTime() - start);
+
+				if(job == END) {
+					this.input.put(END);
+					if(this.running.decrementAndGet() == 0) {
+						this.input.clear();
+						this.output.put(END);
+					}
+					return;
+				}
+
+				start = System.nanoTime();
+				if(job.error == null) {
+					try {
+						this.stage.process(job);
+					}
+					catch(Exception | Error e) {
+						job.error = e;
+					}
+				}
+				this.busy.addAndGet(System.nanoTime() - start);
+				this.processed.incrementAndGet();
+
+				start = System.nanoTime();
+				this.output.put(job);
+				this.blocked.addAndGet(System.nanoTime() - start);
+
+			}
+		}
+
+		public void logStatistics() {
+			logger.info(" [PIPELINE] {} ({} threads): {} commits, busy {}s, waiting for input {}s, waiting for output {}s",
+					this.name, this.threads, this.processed.get(),
+					seconds(this.busy.get()), seconds(this.starved.get()), seconds(this.blocked.get()));
+		}
+
+		private static double seconds(long nanos) {
+			return Math.round(nanos / 1e7) / 100.0;
+		}
+
+	}
+
+}
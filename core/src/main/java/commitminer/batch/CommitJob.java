@@ -0,0 +1,75 @@
+package commitminer.batch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.Triple;
+
+import commitminer.analysis.AnalysisContext;
+import commitminer.analysis.Commit;
+import commitminer.analysis.Commit.Type;
+import commitminer.analysis.CommitAnalysis;
+import commitminer.analysis.SourceCodeFileChange;
+import commitminer.cfd.CFDContextCache;
+
+/**
+ * The state of one commit pair as it moves through the steps of the
+ * analysis: fetching the files, control flow differencing, flow analysis
+ * and post-processing.
+ */
+class CommitJob {
+
+	/** The position of the commit pair in the history (for ordering). **/
+	public long sequence;
+
+	/** The buggy commit, the repaired commit and the commit message type. **/
+	public Triple<String, String, Type> pair;
+
+	/** The commit and the files it changes. **/
+	public Commit commit;
+
+	/** All the source files changed by the commit (including memo hits). **/
+	public List<SourceCodeFileChange> files;
+
+	/** The results that were replayed from the memo. **/
+	public Map<SourceCodeFileChange, AnalysisMemo.Entry> memoized;
+
+	/** The memo keys of the files that have to be analyzed. **/
+	public Map<SourceCodeFileChange, String> memoKeys;
+
+	/** The analysis to run on the commit. **/
+	public CommitAnalysis commitAnalysis;
+
+	/** The control flow differencing results, shared by both passes. **/
+	public CFDContextCache cfdContextCache;
+
+	/** The options and annotations for the Meyers pass. **/
+	public AnalysisContext meyersContext;
+
+	/** The options and annotations for the GumTree pass. **/
+	public AnalysisContext gumtreeContext;
+
+	/** The rows to write for the commit. **/
+	public CommitResult result;
+
+	/** The job's claim on the commit in the run's registry, if any. **/
+	public CommitRegistry.Claim claim;
+
+	/** The error that stopped the analysis of the commit, if any. **/
+	public Throwable error;
+
+	/**
+	 * @param sequence The position of the commit pair in the history.
+	 * @param pair The buggy commit, the repaired commit and the commit
+	 * 		  message type.
+	 */
+	public CommitJob(long sequence, Triple<String, String, Type> pair) {
+		this.sequence = sequence;
+		this.pair = pair;
+		this.memoized = new HashMap<SourceCodeFileChange, AnalysisMemo.Entry>();
+		this.memoKeys = new HashMap<SourceCodeFileChange, String>();
+		this.result = new CommitResult(pair.getLeft(), pair.getMiddle());
+	}
+
+}
@@ -0,0 +1,158 @@
+package commitminer.batch;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import commitminer.analysis.annotation.AnnotationMetricsPostprocessor;
+
+/**
+ * A run-wide registry of the commits that have been analyzed, shared by all
+ * the projects in a run.
+ *
+ * Forks and mirrors share most of their history. The first project to
+ * claim a commit analyzes it. The other projects use its result instead of
+ * analyzing the commit again. They either emit the same rows, attributed
+ * to their own project, or emit nothing for the commit. If a second project
+ * reaches a commit while the first project is still analyzing it, the
+ * second project waits for the result.
+ *
+ * When duplicates are emitted, the rows of every commit are kept for the
+ * whole run. When duplicates are suppressed, only the commit ids are kept.
+ */
+public class CommitRegistry {
+
+	/** What to write for a commit that was analyzed by another project. **/
+	public enum Duplicates {
+		/** Write the rows of the first analysis, attributed to this project. **/
+		EMIT,
+		/** Write nothing. **/
+		SUPPRESS
+	}
+
+	/** The results of the analyzed commits, by repaired commit id. **/
+	private ConcurrentMap<String, CompletableFuture<List<String>>> commits;
+
+	/** What to write for duplicate commits. **/
+	private Duplicates duplicates;
+
+	/** The number of commits that were not analyzed again. **/
+	private AtomicLong hits;
+
+	/**
+	 * @param duplicates What to write for a commit that was analyzed by
+	 * 		  another project.
+	 */
+	public CommitRegistry(Duplicates duplicates) {
+		this.commits = new ConcurrentHashMap<String, CompletableFuture<List<String>>>();
+		this.duplicates = duplicates;
+		this.hits = new AtomicLong(0);
+	}
+
+	/**
+	 * Claims a commit for analysis.
+	 * @param repairedCommitID The id of the commit.
+	 * @return The claim. If the claim is owned, the caller must analyze the
+	 * 		   commit and call {@code complete} or {@code fail}.
+	 */
+	public Claim claim(String repairedCommitID) {
+		CompletableFuture<List<String>> result = new CompletableFuture<List<String>>();
+		CompletableFuture<List<String>> existing = this.commits.putIfAbsent(repairedCommitID, result);
+		if(existing == null) return new Claim(repairedCommitID, result, true);
+		this.hits.incrementAndGet();
+		return new Claim(repairedCommitID, existing, false);
+	}
+
+	/**
+	 * Publishes the result of an owned claim.
+	 * @param claim The owned claim.
+	 * @param result The result of analyzing the commit.
+	 */
+	public void complete(Claim claim, CommitResult result) {
+		if(!claim.owner) return;
+		if(result.failed) {
+			this.fail(claim);
+			return;
+		}
+		claim.result.complete(this.duplicates == Duplicates.EMIT ? result.rows : null);
+	}
+
+	/**
+	 * Publishes that an owned claim could not be analyzed. Projects that
+	 * share the commit do not write any rows for it, and their results are
+	 * marked as failed.
+	 * @param claim The owned claim.
+	 */
+	public void fail(Claim claim) {
+		if(!claim.owner) return;
+		claim.result.completeExceptionally(new IllegalStateException(
+				"The commit " + claim.repairedCommitID + " could not be analyzed."));
+	}
+
+	/**
+	 * Builds the result of a commit that was claimed by another project,
+	 * waiting for the other project to finish analyzing it if needed.
+	 * @param claim A claim that is not owned.
+	 * @param projectID The project that shares the commit.
+	 * @param buggyCommitID The id of the parent commit.
+	 * @return The rows to write for the commit (none if duplicates are
+	 * 		   suppressed).
+	 */
+	public CommitResult attribute(Claim claim, String projectID, String buggyCommitID) throws InterruptedException {
+		CommitResult result = new CommitResult(buggyCommitID, claim.repairedCommitID);
+		List<String> rows;
+		try {
+			rows = claim.result.get();
+		} catch (ExecutionException e) {
+			rows = null;
+			result.failed = true;
+		}
+		if(rows != null) {
+			for(String row : rows) result.rows.add(AnnotationMetricsPostprocessor.withProject(row, projectID));
+		}
+		return result;
+	}
+
+	/**
+	 * @return The number of commits that were not analyzed again.
+	 */
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * @return The number of distinct commits that were claimed.
+	 */
+	public int size() {
+		return this.commits.size();
+	}
+
+	/**
+	 * A project's claim on a commit.
+	 */
+	public static class Claim {
+
+		private String repairedCommitID;
+		private CompletableFuture<List<String>> result;
+		private boolean owner;
+
+		private Claim(String repairedCommitID, CompletableFuture<List<String>> result, boolean owner) {
+			this.repairedCommitID = repairedCommitID;
+			this.result = result;
+			this.owner = owner;
+		}
+
+		/**
+		 * @return True if the project that holds the claim must analyze the
+		 * 		   commit.
+		 */
+		public boolean isOwner() {
+			return this.owner;
+		}
+
+	}
+
+}
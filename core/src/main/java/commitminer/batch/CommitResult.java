@@ -0,0 +1,38 @@
+package commitminer.batch;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Stores the output of analyzing one commit pair.
+ *
+ * Commit pairs may be analyzed concurrently, so the output is buffered here
+ * and written by {@code GitProjectAnalysis} in the order the commits appear
+ * in the project history.
+ */
+public class CommitResult {
+
+	/** The ID for the prior commit. **/
+	public String buggyCommitID;
+
+	/** The ID for the current commit. **/
+	public String repairedCommitID;
+
+	/** The metrics rows produced by the post-processor (one for each file). **/
+	public List<String> rows;
+
+	/** True if the commit could not be analyzed. The commit is not recorded
+	 * in the checkpoint, so it is analyzed again when the run is resumed. **/
+	public boolean failed;
+
+	/**
+	 * @param buggyCommitID The ID for the prior commit.
+	 * @param repairedCommitID The ID for the current commit.
+	 */
+	public CommitResult(String buggyCommitID, String repairedCommitID) {
+		this.buggyCommitID = buggyCommitID;
+		this.repairedCommitID = repairedCommitID;
+		this.rows = new LinkedList<String>();
+	}
+
+}
@@ -0,0 +1,343 @@
+package commitminer.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+
+import commitminer.analysis.Commit.Type;
+import commitminer.analysis.annotation.AnnotationMetricsPostprocessor;
+
+/**
+ * Selects a reproducible random sample of the commits of a project, and
+ * estimates the metrics of the whole project from the analyzed sample.
+ *
+ * Three strategies are supported:
+ *  UNIFORM: each commit is analyzed with a fixed probability.
+ *  STRATIFIED: up to a fixed number of commits of each commit type
+ *  	(bug fix, merge, other) are analyzed.
+ *  CAPPED: up to a fixed number of commits are analyzed.
+ *
+ * The same seed selects the same commits of the same history. A uniform
+ * sample is decided commit by commit (from the seed and the commit id), so
+ * it is produced as the history is walked. The other strategies need the
+ * size of the population, so the history is walked (without analyzing it)
+ * before the first commit is produced.
+ *
+ * For each metric, the mean per commit and the total for the project are
+ * estimated with a 95% confidence interval (normal approximation, with the
+ * finite population correction). Commits that change no source files are
+ * part of the sample and count as zero.
+ */
+public class CommitSampler {
+
+	/** How commits are selected. **/
+	public enum Strategy {
+		UNIFORM,
+		STRATIFIED,
+		CAPPED
+	}
+
+	/** The metrics that are estimated for each commit. **/
+	private static final String[] MEASURES = { "Files", "Annotations", "FalseNegatives", "FalsePositives", "Runtime" };
+
+	/** The z value of a 95% confidence interval. **/
+	private static final double Z_95 = 1.96;
+
+	/** How commits are selected. **/
+	private Strategy strategy;
+
+	/** The probability that a commit is selected (UNIFORM). **/
+	private double rate;
+
+	/** The number of commits to select per stratum (STRATIFIED) or per
+	 * project (CAPPED). **/
+	private int size;
+
+	/** Makes the sample reproducible. **/
+	private long seed;
+
+	/** The population and sample of each stratum. **/
+	private Map<Type, Stratum> strata;
+
+	/** The stratum of each selected commit, by repaired commit id. **/
+	private Map<String, Type> selected;
+
+	/**
+	 * @param strategy How commits are selected.
+	 * @param rate The probability that a commit is selected (UNIFORM).
+	 * @param size The number of commits to select for each commit type
+	 * 		  (STRATIFIED) or for the project (CAPPED).
+	 * @param seed The same seed selects the same commits.
+	 */
+	public CommitSampler(Strategy strategy, double rate, int size, long seed) {
+		this.strategy = strategy;
+		this.rate = rate;
+		this.size = size;
+		this.seed = seed;
+		this.strata = new EnumMap<Type, Stratum>(Type.class);
+		this.selected = new HashMap<String, Type>();
+	}
+
+	/**
+	 * @return A copy of this sampler with no population or sample, for
+	 * 		   sampling another project with the same settings.
+	 */
+	public CommitSampler copy() {
+		return new CommitSampler(this.strategy, this.rate, this.size, this.seed);
+	}
+
+	/**
+	 * Selects the sample from the commits of a project.
+	 * @param commits The commit pairs of the project, in history order.
+	 * @return The selected commit pairs, in history order.
+	 */
+	public Iterator<Triple<String, String, Type>> sample(final Iterator<Triple<String, String, Type>> commits) {
+		if(this.strategy == Strategy.UNIFORM) return this.sampleUniform(commits);
+		return this.sampleFixedSize(commits).iterator();
+	}
+
+	/**
+	 * Selects each commit with probability {@code rate}, as the commits are
+	 * walked. All the commits are in one stratum.
+	 */
+	private Iterator<Triple<String, String, Type>> sampleUniform(final Iterator<Triple<String, String, Type>> commits) {
+		final Stratum stratum = this.getStratum(null);
+		return new Iterator<Triple<String, String, Type>>() {
+
+			private Triple<String, String, Type> next;
+
+			@Override
+			public boolean hasNext() {
+				while(this.next == null && commits.hasNext()) {
+					Triple<String, String, Type> commit = commits.next();
+					stratum.population++;
+					if(uniform(commit.getMiddle()) < rate) {
+						select(commit, null);
+						this.next = commit;
+					}
+				}
+				return this.next != null;
+			}
+
+			@Override
+			public Triple<String, String, Type> next() {
+				if(!this.hasNext()) throw new NoSuchElementException();
+				Triple<String, String, Type> commit = this.next;
+				this.next = null;
+				return commit;
+			}
+
+		};
+	}
+
+	/**
+	 * Selects up to {@code size} commits from each stratum with reservoir
+	 * sampling, then puts the selected commits back in history order.
+	 */
+	private List<Triple<String, String, Type>> sampleFixedSize(Iterator<Triple<String, String, Type>> commits) {
+
+		Random random = new Random(this.seed);
+		Map<Type, List<Pair<Long, Triple<String, String, Type>>>> reservoirs =
+				new HashMap<Type, List<Pair<Long, Triple<String, String, Type>>>>();
+
+		long position = 0;
+		while(commits.hasNext()) {
+			Triple<String, String, Type> commit = commits.next();
+			Type type = this.strategy == Strategy.STRATIFIED ? commit.getRight() : null;
+			Stratum stratum = this.getStratum(type);
+			stratum.population++;
+
+			List<Pair<Long, Triple<String, String, Type>>> reservoir = reservoirs.get(type);
+			if(reservoir == null) {
+				reservoir = new ArrayList<Pair<Long, Triple<String, String, Type>>>();
+				reservoirs.put(type, reservoir);
+			}
+
+			/* Keep each of the commits seen so far with equal probability. */
+			if(reservoir.size() < this.size) {
+				reservoir.add(Pair.of(position, commit));
+			}
+			else {
+				long replace = (long)(random.nextDouble() * stratum.population);
+				if(replace < this.size) reservoir.set((int)replace, Pair.of(position, commit));
+			}
+			position++;
+		}
+
+		List<Pair<Long, Triple<String, String, Type>>> sample = new ArrayList<Pair<Long, Triple<String, String, Type>>>();
+		for(Map.Entry<Type, List<Pair<Long, Triple<String, String, Type>>>> reservoir : reservoirs.entrySet()) {
+			for(Pair<Long, Triple<String, String, Type>> commit : reservoir.getValue()) {
+				this.select(commit.getRight(), reservoir.getKey());
+				sample.add(commit);
+			}
+		}
+
+		Collections.sort(sample, new Comparator<Pair<Long, Triple<String, String, Type>>>() {
+			@Override
+			public int compare(Pair<Long, Triple<String, String, Type>> a, Pair<Long, Triple<String, String, Type>> b) {
+				return Long.compare(a.getLeft(), b.getLeft());
+			}
+		});
+
+		List<Triple<String, String, Type>> commitsInOrder = new LinkedList<Triple<String, String, Type>>();
+		for(Pair<Long, Triple<String, String, Type>> commit : sample) commitsInOrder.add(commit.getRight());
+		return commitsInOrder;
+
+	}
+
+	/**
+	 * Records the metrics of an analyzed commit in the sample.
+	 * @param result The result of analyzing a selected commit.
+	 */
+	public synchronized void record(CommitResult result) {
+		if(!this.selected.containsKey(result.repairedCommitID)) return;
+		Stratum stratum = this.getStratum(this.selected.get(result.repairedCommitID));
+
+		double[] values = new double[MEASURES.length];
+		values[0] = result.rows.size();
+		for(String row : result.rows) {
+			for(Map.Entry<String, Long> metric : AnnotationMetricsPostprocessor.getMetrics(row).entrySet()) {
+				String name = metric.getKey();
+				if(name.endsWith("FN")) values[2] += metric.getValue();
+				else if(name.endsWith("FP")) values[3] += metric.getValue();
+				else if(name.endsWith("Def") || name.endsWith("Use")) values[1] += metric.getValue();
+				else if(name.equals("Runtime")) values[4] += metric.getValue();
+			}
+		}
+		stratum.samples.add(values);
+	}
+
+	/**
+	 * @return The size of the population and of the sample, and the
+	 * 		   estimated mean per commit and total of each metric with their
+	 * 		   95% confidence intervals.
+	 */
+	public synchronized String getStatistics() {
+
+		long population = 0;
+		long sampled = 0;
+		for(Stratum stratum : this.strata.values()) {
+			population += stratum.population;
+			sampled += stratum.samples.size();
+		}
+
+		StringBuilder s = new StringBuilder();
+		s.append(this.strategy).append(" sample of ").append(sampled).append(" of ").append(population).append(" commits");
+		for(Map.Entry<Type, Stratum> stratum : this.strata.entrySet()) {
+			if(this.strategy == Strategy.STRATIFIED)
+				s.append(", ").append(stratum.getKey()).append(" ")
+				 .append(stratum.getValue().samples.size()).append("/").append(stratum.getValue().population);
+		}
+		if(population == 0) return s.toString();
+
+		/* Strata with no samples (e.g., every sampled commit failed) cannot
+		 * be estimated. The weights of the other strata are renormalized, so
+		 * the estimate assumes the missing strata look like the rest. */
+		long covered = 0;
+		for(Map.Entry<Type, Stratum> stratum : this.strata.entrySet()) {
+			if(!stratum.getValue().samples.isEmpty()) covered += stratum.getValue().population;
+			else if(stratum.getValue().population > 0)
+				s.append(", no samples of ").append(this.strategy == Strategy.STRATIFIED ? stratum.getKey() + " " : "")
+				 .append("(").append(stratum.getValue().population).append(" commits)");
+		}
+		if(covered == 0) return s.toString();
+		if(covered < population) s.append(", weights renormalized over ").append(covered).append(" commits");
+
+		/* The stratified estimator (one stratum unless STRATIFIED). */
+		for(int m = 0; m < MEASURES.length; m++) {
+			double mean = 0;
+			double variance = 0;
+			for(Stratum stratum : this.strata.values()) {
+				int n = stratum.samples.size();
+				if(n == 0) continue;
+				double weight = (double)stratum.population / covered;
+				double stratumMean = stratum.mean(m);
+				mean += weight * stratumMean;
+				if(n > 1) {
+					double fpc = 1.0 - (double)n / stratum.population;
+					variance += weight * weight * fpc * stratum.variance(m, stratumMean) / n;
+				}
+			}
+			double margin = Z_95 * Math.sqrt(variance);
+			s.append(String.format("%n  %s: %.2f per commit (+/- %.2f), %.0f total (+/- %.0f)",
+					MEASURES[m], mean, margin, mean * population, margin * population));
+		}
+
+		return s.toString();
+
+	}
+
+	/**
+	 * Remembers the stratum of a selected commit.
+	 */
+	private synchronized void select(Triple<String, String, Type> commit, Type type) {
+		this.selected.put(commit.getMiddle(), type);
+	}
+
+	/**
+	 * @return The stratum for a commit type ({@code null} for all commits).
+	 */
+	private synchronized Stratum getStratum(Type type) {
+		Type key = type == null ? Type.OTHER : type;
+		Stratum stratum = this.strata.get(key);
+		if(stratum == null) {
+			stratum = new Stratum();
+			this.strata.put(key, stratum);
+		}
+		return stratum;
+	}
+
+	/**
+	 * @return A number in [0, 1) that is fixed for a seed and a commit id.
+	 */
+	private double uniform(String commitID) {
+		long h = this.seed;
+		for(int i = 0; i < commitID.length(); i++) h = h * 31 + commitID.charAt(i);
+
+		/* Mix the bits so that similar ids give unrelated numbers. */
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		return (h >>> 11) / (double)(1L << 53);
+	}
+
+	/**
+	 * The commits of one commit type (or all commits).
+	 */
+	private static class Stratum {
+
+		/** The number of commits in the project. **/
+		long population;
+
+		/** The metrics of each analyzed commit. **/
+		List<double[]> samples = new LinkedList<double[]>();
+
+		double mean(int measure) {
+			double sum = 0;
+			for(double[] values : this.samples) sum += values[measure];
+			return sum / this.samples.size();
+		}
+
+		double variance(int measure, double mean) {
+			double sum = 0;
+			for(double[] values : this.samples) sum += (values[measure] - mean) * (values[measure] - mean);
+			return sum / (this.samples.size() - 1);
+		}
+
+	}
+
+}
@@ -1,10 +1,16 @@
 package commitminer.batch;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,6 +21,7 @@ import org.eclipse.jgit.api.errors.TransportException;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -22,9 +29,11 @@ import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.Commit;
-import commitminer.analysis.CommitAnalysis;
 import commitminer.analysis.SourceCodeFileChange;
 import commitminer.analysis.Commit.Type;
 import commitminer.analysis.annotation.AnnotationFactBase;
@@ -32,7 +41,13 @@ import commitminer.analysis.annotation.AnnotationMetricsPostprocessor;
 import commitminer.analysis.factories.ICommitAnalysisFactory;
 import commitminer.analysis.options.Options;
 import commitminer.analysis.options.Options.DiffMethod;
+import commitminer.cfd.CFDContextCache;
+import commitminer.cfd.MatchPolicy;
+import commitminer.cfd.ParseCache;
+import commitminer.git.BlobStore;
+import commitminer.git.CommitPairSource;
 import commitminer.git.GitProject;
+import commitminer.git.SourceFileFilter;
 
 /**
  * Performs analysis on a Git project using an AnalysisRunner
@@ -47,6 +62,65 @@ public class GitProjectAnalysis extends GitProject {
 	/** The annotation post-processor. **/
 	AnnotationMetricsPostprocessor postProc;
 
+	/** The number of commit pairs queued on the pool for each thread. **/
+	private static final int IN_FLIGHT_PER_THREAD = 4;
+
+	/** The capacity of the queues between pipeline stages. **/
+	private static final int PIPELINE_QUEUE_CAPACITY = 8;
+
+	/** The number of commit pairs to analyze concurrently. **/
+	private int nThreads;
+
+	/** A pool shared with other projects, or null to create a pool for
+	 * this project. **/
+	private ForkJoinPool pool;
+
+	/** The maximum number of commit pairs to analyze (zero for no limit). **/
+	private int commitLimit;
+
+	/** The number of threads for each stage of the pipeline (fetch,
+	 * difference, flow analysis, post-process). Null to run without a
+	 * pipeline. **/
+	private int[] pipelineThreads;
+
+	/** The options for the analysis. The diff method is set by each pass. **/
+	private Options options;
+
+	/** Reads and caches file contents while the project is analyzed. **/
+	private BlobStore blobStore;
+
+	/** Stores analysis results by blob pair. May be {@code null}. **/
+	private AnalysisMemo memo;
+
+	/** If true, commits recorded in the project's checkpoint are skipped. **/
+	private boolean resume;
+
+	/** The commits that have been analyzed. Null outside of {@code analyze}. **/
+	private AnalysisCheckpoint checkpoint;
+
+	/** The commits analyzed by any project in the run. May be {@code null}. **/
+	private CommitRegistry registry;
+
+	/** Selects the commits to analyze. Null to analyze every commit. **/
+	private CommitSampler sampler;
+
+	/** Decides which file changes are flow analyzed. Null to flow analyze
+	 * every file change. **/
+	private ScreeningPolicy screeningPolicy;
+
+	/** The parsed trees of recently analyzed files. Null to parse every
+	 * file. **/
+	private ParseCache parseCache;
+
+	/** How the ASTs are matched. Null to match every file with GumTree. **/
+	private MatchPolicy matchPolicy;
+
+	/** Only build the CFGs of changed functions up front. **/
+	private boolean changeScoped;
+
+	/** Build the CFGs of each function concurrently. **/
+	private boolean parallelFunctions;
+
 	/**
 	 * Constructor that is used by our static factory methods.
 	 */
@@ -56,35 +130,433 @@ public class GitProjectAnalysis extends GitProject {
 		super(gitProject);
 		this.commitAnalysisFactory = commitAnalysisFactory;
 		this.postProc = postProc;
+		this.nThreads = 1;
+		this.options = new Options();
+	}
+
+	/**
+	 * @param options The options for the analysis. Only the change impact
+	 * 		  is used, since each commit is analyzed with both diff methods.
+	 */
+	public void setOptions(Options options) {
+		this.options = options;
+	}
+
+	/**
+	 * @param memo Stores analysis results by blob pair, so that file changes
+	 * 		  which appear more than once are only analyzed once.
+	 */
+	public void setAnalysisMemo(AnalysisMemo memo) {
+		this.memo = memo;
+	}
+
+	/**
+	 * @param registry The commits analyzed by every project in the run. A
+	 * 		  commit that is shared with another project (e.g., a fork) is
+	 * 		  only analyzed by the first project that reaches it.
+	 */
+	public void setCommitRegistry(CommitRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * @param sampler Selects a random sample of the commits to analyze, and
+	 * 		  estimates the project's metrics from the sample. The sampler
+	 * 		  must not be shared with other projects.
+	 */
+	public void setSampler(CommitSampler sampler) {
+		this.sampler = sampler;
+	}
+
+	/**
+	 * @param screeningPolicy Screens out file changes that are not worth the
+	 * 		  flow analysis. The rows of screened file changes record why
+	 * 		  they were screened out.
+	 */
+	public void setScreeningPolicy(ScreeningPolicy screeningPolicy) {
+		this.screeningPolicy = screeningPolicy;
+	}
+
+	/**
+	 * @param parseCache Keeps the parsed trees of recently analyzed files, so
+	 * 		  that a version of a file that appears on both sides of
+	 * 		  consecutive commits is only parsed once. The cache may be
+	 * 		  shared with other projects.
+	 */
+	public void setParseCache(ParseCache parseCache) {
+		this.parseCache = parseCache;
+	}
+
+	/**
+	 * @param matchPolicy Matches the ASTs of large files with a cheaper
+	 * 		  strategy than GumTree, or forces one strategy for every file.
+	 * 		  The strategy used for each file is written to its row.
+	 */
+	public void setMatchPolicy(MatchPolicy matchPolicy) {
+		this.matchPolicy = matchPolicy;
+	}
+
+	/**
+	 * @param changeScoped If true, only the CFGs of the changed functions are
+	 * 		  built when a file is differenced. The CFGs of other functions
+	 * 		  are built when the flow analysis reaches them.
+	 */
+	public void setChangeScoped(boolean changeScoped) {
+		this.changeScoped = changeScoped;
+	}
+
+	/**
+	 * @param parallelFunctions If true, the CFGs of a file's functions are
+	 * 		  built concurrently on the common pool. Node and edge IDs are
+	 * 		  the same as in a sequential build.
+	 */
+	public void setParallelFunctions(boolean parallelFunctions) {
+		this.parallelFunctions = parallelFunctions;
+	}
+
+	/**
+	 * @param resume If true, the commits that were analyzed by an earlier run
+	 * 		  with the same configuration are skipped. The analyzed commits
+	 * 		  are always recorded in a checkpoint in the project's .git
+	 * 		  directory, so any run can be resumed.
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	/**
+	 * @param nThreads The number of commit pairs to analyze concurrently. If
+	 * 		  greater than one, commit pairs are analyzed on a work-stealing
+	 * 		  pool.
+	 */
+	public void setNThreads(int nThreads) {
+		this.nThreads = nThreads;
+	}
+
+	/**
+	 * Runs the analysis as a staged pipeline instead of analyzing one commit
+	 * at a time. The number of threads for analyzing whole commits is not
+	 * used when the pipeline is enabled.
+	 * @param fetchThreads The number of threads that read files from git.
+	 * @param differenceThreads The number of threads that parse, match and
+	 * 		  build CFGs.
+	 * @param flowThreads The number of threads that run the flow analyses.
+	 * @param postProcessThreads The number of threads that compute the
+	 * 		  metrics for each commit.
+	 */
+	public void setPipeline(int fetchThreads, int differenceThreads, int flowThreads, int postProcessThreads) {
+		this.pipelineThreads = new int[] { fetchThreads, differenceThreads, flowThreads, postProcessThreads };
+	}
+
+	/**
+	 * Analyzes the commit pairs on a pool that is shared with other projects,
+	 * so that idle workers can pick up commits from any project that is still
+	 * being analyzed. The pool is not shut down when the analysis finishes.
+	 * @param pool The shared pool, or {@code null} to use a pool of
+	 * 		  {@code nThreads} for this project only.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @param commitLimit The maximum number of commit pairs to analyze,
+	 * 		  starting with the most recent commit (zero for no limit).
+	 */
+	public void setCommitLimit(int commitLimit) {
+		this.commitLimit = commitLimit;
 	}
 
 	/**
 	 * Analyze the repository (extract repairs).
 	 *
+	 * Commit pairs are analyzed as they are discovered in the version
+	 * history, so analysis starts before the history has been walked.
+	 *
 	 * @throws GitAPIException
 	 * @throws IOException
 	 */
 	public void analyze() throws GitAPIException, IOException, Exception {
 		long startTime = System.currentTimeMillis();
 		logger.info("[START ANALYSIS] {}", this.getURI());
+		if(this.screeningPolicy != null) logger.info(" [SCREEN] {}", this.screeningPolicy);
+		if(this.matchPolicy != null) logger.info(" [MATCH] {}", this.matchPolicy);
+		if(this.changeScoped) logger.info(" [CHANGE SCOPED]");
+
+		/* Stream the bug fixing commits from version history. */
+		CommitPairSource source = this.getCommitPairSource(this.commitLimit);
+		int analyzed = 0;
+
+		/* Record the analyzed commits, so that a run that stops can be
+		 * resumed. When resuming, skip the commits that have already been
+		 * analyzed. Otherwise, start a new checkpoint. */
+		this.checkpoint = new AnalysisCheckpoint(
+				AnalysisCheckpoint.getPath(this.repository.getDirectory().toPath(), this.getConfiguration()),
+				this.getConfiguration(), this.resume);
+		if(this.resume) logger.info(" [CHECKPOINT] {} commits already analyzed", this.checkpoint.size());
 
-		/* Get the list of bug fixing commits from version history. */
-		List<Triple<String, String, Type>> commits = this.getCommitPairs();
+		/* Analyze the changes made in each bug fixing commit. */
+		this.blobStore = new BlobStore(this.repository, BlobStore.DEFAULT_CACHE_SIZE);
+		try {
+			Iterator<Triple<String, String, Type>> commits = this.skipAnalyzed(
+					this.sampler == null ? source : this.sampler.sample(source));
+			if(this.pipelineThreads != null) analyzed = this.analyzePipeline(commits);
+			else if(this.nThreads > 1 || this.pool != null) analyzed = this.analyzeParallel(commits);
+			else analyzed = this.analyzeSequential(commits);
+		}
+		finally {
+			source.close();
+			logger.info(" [BLOB CACHE] {}", this.blobStore.getStatistics());
+			if(this.memo != null) logger.info(" [MEMO] {} hits, {} misses", this.memo.getHits(), this.memo.getMisses());
+			if(this.parseCache != null) logger.info(" [PARSE CACHE] {}", this.parseCache.getStatistics());
+			this.blobStore.close();
+			if(this.checkpoint != null) {
+				this.checkpoint.close();
+				this.checkpoint = null;
+			}
+		}
 
-		logger.info(" [ANALYZING] {} bug fixing commits", commits.size());
+		/* The project metrics were computed while walking the history. */
+		if(source.isExhausted()) this.recordMetrics(source);
 
-		/* Analyze the changes made in each bug fixing commit. */
-		for(Triple<String, String, Type> commit : commits) {
+		logger.info(" [ANALYZED] {} bug fixing commits", analyzed);
+		if(this.sampler != null) logger.info(" [SAMPLE] {}", this.sampler.getStatistics());
+
+		long endTime = System.currentTimeMillis();
+		logger.info("[END ANALYSIS] {}. Time (in seconds): {} ", this.getURI(), (endTime - startTime) / 1000.0);
+	}
+
+	/**
+	 * Analyzes the commit pairs one at a time on the current thread.
+	 * @param commits The commit pairs to analyze.
+	 * @return The number of commit pairs that were analyzed.
+	 */
+	private int analyzeSequential(Iterator<Triple<String, String, Type>> commits) throws IOException {
+		int analyzed = 0;
+		while(commits.hasNext()) {
+			Triple<String, String, Type> commit = commits.next();
+			analyzed++;
 
 			try {
-				this.analyzeDiff(commit.getLeft(), commit.getMiddle(), commit.getRight());
+				this.writeResult(this.analyzeCommit(commit));
 			} catch (Exception e) {
 				logger.error("[ERROR] {}, {}", commit.getMiddle(),  e.getMessage());
 			}
 		}
+		return analyzed;
+	}
+
+	/**
+	 * Analyzes the commit pairs concurrently on a work-stealing pool. Commit
+	 * pairs are independent of each other, so they can be analyzed in any
+	 * order. The results are written in history order so that the output is
+	 * the same as the output of a sequential run.
+	 *
+	 * Only a bounded number of commit pairs are in flight at once, so the
+	 * history is walked only as fast as the commits are analyzed.
+	 * @param commits The commit pairs to analyze.
+	 * @return The number of commit pairs that were analyzed.
+	 */
+	private int analyzeParallel(Iterator<Triple<String, String, Type>> commits) throws IOException, InterruptedException {
+
+		ForkJoinPool pool = this.pool != null ? this.pool : new ForkJoinPool(this.nThreads);
+		int window = pool.getParallelism() * IN_FLIGHT_PER_THREAD;
+		int analyzed = 0;
+
+		try {
+
+			LinkedList<Pair<Triple<String, String, Type>, Future<CommitResult>>> inFlight =
+					new LinkedList<Pair<Triple<String, String, Type>, Future<CommitResult>>>();
+
+			while(commits.hasNext() || !inFlight.isEmpty()) {
+
+				/* Fill the window with commit pairs from the history. */
+				while(inFlight.size() < window && commits.hasNext()) {
+					final Triple<String, String, Type> commit = commits.next();
+					analyzed++;
+					inFlight.add(Pair.of(commit, pool.submit(new Callable<CommitResult>() {
+						@Override
+						public CommitResult call() throws Exception {
+							return analyzeCommit(commit);
+						}
+					})));
+				}
+
+				/* Write the oldest result in history order once it is available. */
+				Pair<Triple<String, String, Type>, Future<CommitResult>> oldest = inFlight.removeFirst();
+				try {
+					this.writeResult(oldest.getRight().get());
+				} catch (ExecutionException e) {
+					logger.error("[ERROR] {}, {}", oldest.getLeft().getMiddle(),  e.getCause().getMessage());
+				}
+
+			}
+
+		}
+		finally {
+			if(pool != this.pool) pool.shutdownNow();
+		}
+
+		return analyzed;
+
+	}
+
+	/**
+	 * Analyzes the commit pairs on a staged pipeline. Reading files from git
+	 * (I/O-bound) overlaps with differencing and flow analysis (CPU-bound),
+	 * and each stage has its own threads.
+	 * @param commits The commit pairs to analyze.
+	 * @return The number of commit pairs that were analyzed.
+	 */
+	private int analyzePipeline(Iterator<Triple<String, String, Type>> commits) throws InterruptedException {
+
+		AnalysisPipeline pipeline = new AnalysisPipeline(PIPELINE_QUEUE_CAPACITY, new AnalysisPipeline.Stage() {
+			@Override
+			public void process(CommitJob job) throws Exception {
+				writeResult(job.result);
+			}
+		});
+
+		pipeline.addStage("fetch", this.pipelineThreads[0], this.failClaimOnError(new AnalysisPipeline.Stage() {
+			@Override
+			public void process(CommitJob job) throws Exception {
+				if(claim(job)) fetch(job);
+			}
+		}));
+		pipeline.addStage("difference", this.pipelineThreads[1], this.failClaimOnError(new AnalysisPipeline.Stage() {
+			@Override
+			public void process(CommitJob job) throws Exception {
+				if(job.commit != null) job.commitAnalysis.difference(job.commit, job.cfdContextCache);
+			}
+		}));
+		pipeline.addStage("flow", this.pipelineThreads[2], this.failClaimOnError(new AnalysisPipeline.Stage() {
+			@Override
+			public void process(CommitJob job) throws Exception {
+				analyzeFlow(job);
+			}
+		}));
+		pipeline.addStage("post-process", this.pipelineThreads[3], this.failClaimOnError(new AnalysisPipeline.Stage() {
+			@Override
+			public void process(CommitJob job) throws Exception {
+				postProcess(job);
+				if(job.claim != null) registry.complete(job.claim, job.result);
+			}
+		}));
+
+		return pipeline.run(commits);
+
+	}
+
+	/**
+	 * Claims a pipeline job's commit in the registry. If another project
+	 * claimed the commit first, waits for its result and attributes it to
+	 * this project. The claim is made (and the wait happens) in the fetch
+	 * stage, while the owner publishes its result in the post-process stage,
+	 * so projects that wait on each other's commits cannot deadlock.
+	 * @param job The commit pair to claim.
+	 * @return True if this project must analyze the commit.
+	 */
+	private boolean claim(CommitJob job) throws InterruptedException {
+		if(this.registry == null) return true;
+		job.claim = this.registry.claim(job.pair.getMiddle());
+		if(job.claim.isOwner()) return true;
+		job.result = this.registry.attribute(job.claim, this.projectID, job.pair.getLeft());
+		return false;
+	}
+
+	/**
+	 * @return A stage that releases the job's claim if the stage fails, so
+	 * 		   that other projects waiting on the commit do not wait forever.
+	 */
+	private AnalysisPipeline.Stage failClaimOnError(final AnalysisPipeline.Stage stage) {
+		return new AnalysisPipeline.Stage() {
+			@Override
+			public void process(CommitJob job) throws Exception {
+				try {
+					stage.process(job);
+				}
+				catch(Exception | Error e) {
+					if(job.claim != null) registry.fail(job.claim);
+					throw e;
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return The commit pairs that were not analyzed by an earlier run.
+	 */
+	private Iterator<Triple<String, String, Type>> skipAnalyzed(final Iterator<Triple<String, String, Type>> commits) {
+		if(this.checkpoint == null || !this.resume) return commits;
+		return new Iterator<Triple<String, String, Type>>() {
+
+			private Triple<String, String, Type> next;
+
+			@Override
+			public boolean hasNext() {
+				while(this.next == null && commits.hasNext()) {
+					Triple<String, String, Type> commit = commits.next();
+					if(!checkpoint.isAnalyzed(commit.getMiddle())) this.next = commit;
+				}
+				return this.next != null;
+			}
+
+			@Override
+			public Triple<String, String, Type> next() {
+				if(!this.hasNext()) throw new NoSuchElementException();
+				Triple<String, String, Type> commit = this.next;
+				this.next = null;
+				return commit;
+			}
+
+		};
+	}
+
+	/**
+	 * Writes the rows for an analyzed commit pair to the post-processor's
+	 * output file, then records the commit in the checkpoint and the
+	 * sample. A commit whose analysis failed is not recorded, so that it is
+	 * analyzed again when the run is resumed and does not skew the sample.
+	 * This is the same for every way of running the analysis.
+	 * @param result The result of analyzing a commit pair.
+	 */
+	private void writeResult(CommitResult result) throws IOException {
+		if(this.postProc != null) {
+			for(String row : result.rows) this.postProc.writeRow(row);
+		}
+		if(result.failed) return;
+		if(this.checkpoint != null) this.checkpoint.record(result.repairedCommitID);
+		if(this.sampler != null) this.sampler.record(result);
+	}
+
+	/**
+	 * Analyzes a commit pair, unless another project in the run has already
+	 * claimed the commit. In that case, waits for the other project's result
+	 * and attributes it to this project. The owner never waits on another
+	 * project, and a pool worker that waits is compensated by the pool, so
+	 * projects sharing a pool cannot deadlock.
+	 * @param commit The commit pair to analyze.
+	 * @return The post-processor rows for the commit, which have not yet
+	 * 		   been written.
+	 */
+	private CommitResult analyzeCommit(Triple<String, String, Type> commit) throws Exception {
+
+		if(this.registry == null) return this.analyzeDiff(commit.getLeft(), commit.getMiddle(), commit.getRight());
+
+		CommitRegistry.Claim claim = this.registry.claim(commit.getMiddle());
+		if(!claim.isOwner()) return this.registry.attribute(claim, this.projectID, commit.getLeft());
+
+		boolean completed = false;
+		try {
+			CommitResult result = this.analyzeDiff(commit.getLeft(), commit.getMiddle(), commit.getRight());
+			this.registry.complete(claim, result);
+			completed = true;
+			return result;
+		}
+		finally {
+			if(!completed) this.registry.fail(claim);
+		}
 
-		long endTime = System.currentTimeMillis();
-		logger.info("[END ANALYSIS] {}. Time (in seconds): {} ", this.getURI(), (endTime - startTime) / 1000.0);
 	}
 
 	/**
@@ -95,15 +567,53 @@ public class GitProjectAnalysis extends GitProject {
 	 * @param bugFixingRevision The hash that identifies the fixed revision.
 	 * @param bugFixingCommit True if the commit is labeled as a bug fixing
 	 * 		  commit (from NLP).
+	 * @return The post-processor rows for the commit, which have not yet
+	 * 		   been written.
 	 * @throws IOException
 	 * @throws GitAPIException
 	 */
-	private void analyzeDiff(String buggyRevision, String bugFixingRevision, Type commitMessageType) throws IOException, GitAPIException, Exception {
+	private CommitResult analyzeDiff(String buggyRevision, String bugFixingRevision, Type commitMessageType) throws IOException, GitAPIException, Exception {
+
+		CommitJob job = new CommitJob(0, Triple.of(buggyRevision, bugFixingRevision, commitMessageType));
+
+		this.fetch(job);
+
+		/* Run the {@code CommitAnalysis} through the AnalysisRunner. */
+
+		try {
+			this.analyzeFlow(job);
+			this.postProcess(job);
+		}
+		catch(Exception ignore) {
+			job.result.failed = true;
+			System.err.println("Ignoring exception in ProjectAnalysis.runSDJSB.\nBuggy Revision: " + buggyRevision + "\nBug Fixing Revision: " + bugFixingRevision);
+//			throw ignore;
+		}
+		catch(Error e) {
+			job.result.failed = true;
+			System.err.println("Ignoring error in ProjectAnalysis.runSDJSB.\nBuggy Revision: " + buggyRevision + "\nBug Fixing Revision: " + bugFixingRevision);
+//			throw e;
+		}
+
+		return job.result;
+
+	}
+
+	/**
+	 * Reads the source files changed by a commit from Git and looks them up
+	 * in the memo. If the commit does not change any source files, the job's
+	 * commit is left {@code null}.
+	 * @param job The commit pair to fetch.
+	 */
+	private void fetch(CommitJob job) throws IOException, GitAPIException {
+
+		String buggyRevision = job.pair.getLeft();
+		String bugFixingRevision = job.pair.getMiddle();
 
 		ObjectId buggy = this.repository.resolve(buggyRevision + "^{tree}");
 		ObjectId repaired = this.repository.resolve(bugFixingRevision + "^{tree}");
 
-		ObjectReader reader = this.repository.newObjectReader();
+		ObjectReader reader = this.blobStore.getReader();
 
 		CanonicalTreeParser buggyTreeIter = new CanonicalTreeParser();
 		buggyTreeIter.reset(reader, buggy);
@@ -111,102 +621,238 @@ public class GitProjectAnalysis extends GitProject {
 		CanonicalTreeParser repairedTreeIter = new CanonicalTreeParser();
 		repairedTreeIter.reset(reader, repaired);
 
-		DiffCommand diffCommand = this.git.diff().setShowNameAndStatusOnly(true).setOldTree(buggyTreeIter).setNewTree(repairedTreeIter);
+		/* Only JavaScript source files (in the directories of the history
+		 * filter) are compared, so changes to other files never become diff
+		 * entries. */
+		TreeFilter pathFilter = SourceFileFilter.INSTANCE;
+		if(this.historyFilter != null && !this.historyFilter.paths.isEmpty())
+			pathFilter = AndTreeFilter.create(this.historyFilter.getPathFilter(), pathFilter);
+		DiffCommand diffCommand = this.git.diff().setShowNameAndStatusOnly(true)
+				.setOldTree(buggyTreeIter).setNewTree(repairedTreeIter)
+				.setPathFilter(pathFilter);
 
 		List<DiffEntry> diffs = diffCommand.call();
 
+		/* Skip commits that do not change any source files. */
+		if(diffs.isEmpty()) {
+			logger.debug("[SKIP_COMMIT] No source files changed: {}", bugFixingRevision);
+			return;
+		}
+
 		/* The {@code Commit} is meta data and a set of source code changes. */
 		Commit commit = new Commit(
 				this.projectID,
 				this.projectHomepage,
 				buggyRevision, bugFixingRevision,
-				commitMessageType);
+				job.pair.getRight());
+
+		/* The commit message type is known before any file is read, so the
+		 * files of a commit that is screened out by its type are never read
+		 * (unless their results are replayed from the memo). */
+		String commitReason = this.screeningPolicy == null ? null
+				: this.screeningPolicy.screenType(job.pair.getRight());
 
 		/* Iterate through the modified files and add them as
-		 * {@code SourceCodeFileChange}s in the commit. */
+		 * {@code SourceCodeFileChange}s in the commit. The contents of the
+		 * files are read below, once we know they are needed. */
+		List<DiffEntry> sourceDiffs = new LinkedList<DiffEntry>();
 		for(DiffEntry diff : diffs) {
 
-			/* Skip jquery files. */
-			if (diff.getOldPath().matches("^.*jquery.*$") || diff.getNewPath().matches("^.*jquery.*$")) {
-				logger.info("[SKIP_FILE] jquery file: " + diff.getOldPath());
+			/* Skip files that were added or deleted (one of the paths is
+			 * /dev/null). Non-js, minified and jquery files were filtered out
+			 * by the tree filter. */
+			if (!SourceFileFilter.isSourceFile(diff.getOldPath()) || !SourceFileFilter.isSourceFile(diff.getNewPath())) {
+				logger.info("[SKIP_FILE] Skipping added or deleted file: " + diff.getOldPath() + " -> " + diff.getNewPath());
 				continue;
 			}
 
-			/* Skip minified files. */
-			if (diff.getOldPath().endsWith(".min.js") || diff.getNewPath().endsWith(".min.js")) {
-				logger.info("[SKIP_FILE] Skipping minifed file: " + diff.getOldPath());
-				return;
-			}
-
-			/* Skip anything that is not a js file. */
-			if (!diff.getOldPath().endsWith(".js") || !diff.getNewPath().endsWith(".js")) {
-				logger.info("[SKIP_FILE] Skipping non-js file: " + diff.getOldPath());
-				return;
-			}
-
 			logger.debug("Exploring diff \n {} \n {} - {} \n {} - {}", getURI(), buggyRevision, diff.getOldPath(),
 					bugFixingRevision, diff.getNewPath());
 
 			/* Add this source code file change to the commit. */
+			SourceCodeFileChange sourceCodeFileChange = new SourceCodeFileChange(
+					diff.getOldPath(), diff.getNewPath(), "", "");
+			if(diff.getOldId().isComplete()) sourceCodeFileChange.buggyBlobID = diff.getOldId().name();
+			if(diff.getNewId().isComplete()) sourceCodeFileChange.repairedBlobID = diff.getNewId().name();
+			commit.addSourceCodeFileChange(sourceCodeFileChange);
+			sourceDiffs.add(diff);
 
-			String oldFile = this.fetchBlob(buggyRevision, diff.getOldPath());
-			String newFile = this.fetchBlob(bugFixingRevision, diff.getNewPath());
-
-			commit.addSourceCodeFileChange(new SourceCodeFileChange(
-					diff.getOldPath(), diff.getNewPath(),
-					oldFile, newFile));
+		}
 
+		List<SourceCodeFileChange> files = commit.sourceCodeFileChanges;
+		if(files.isEmpty()) return;
+
+		/* Files that have already been analyzed with this configuration
+		 * (e.g., in a cherry-picked commit or in a fork) are replayed from
+		 * the memo instead of being analyzed again. The files of a commit
+		 * that fails the type check are not read. The files are read before
+		 * they are put in a map, since their hash depends on their contents. */
+		commit.sourceCodeFileChanges = new LinkedList<SourceCodeFileChange>();
+		Iterator<DiffEntry> sourceDiff = sourceDiffs.iterator();
+		for(SourceCodeFileChange fileChange : files) {
+			DiffEntry diff = sourceDiff.next();
+			String key = this.memo == null ? null : this.memo.getKey(this.getConfiguration(), fileChange);
+			AnalysisMemo.Entry entry = key == null ? null : this.memo.get(key);
+			if(entry != null) {
+				this.readFiles(fileChange, diff, buggyRevision, bugFixingRevision);
+				job.memoized.put(fileChange, entry);
+			}
+			else if(commitReason != null) {
+				fileChange.screened = commitReason;
+				commit.addSourceCodeFileChange(fileChange);
+			}
+			else {
+				this.readFiles(fileChange, diff, buggyRevision, bugFixingRevision);
+				if(this.screeningPolicy != null) fileChange.screened = this.screeningPolicy.screenLines(fileChange);
+				if(key != null) job.memoKeys.put(fileChange, key);
+				commit.addSourceCodeFileChange(fileChange);
+			}
 		}
 
-		/* Run the {@code CommitAnalysis} through the AnalysisRunner. */
+		/* We'll be performing two analyses: once for Gumtree and once for
+		 * Meyers. Each pass has its own context, so the passes do not share
+		 * options or annotations. The passes do share the parsed, matched
+		 * and CFG-converted files, so only the flow analysis is repeated. */
+		job.commit = commit;
+		job.files = files;
+		job.commitAnalysis = commitAnalysisFactory.newInstance();
+		job.cfdContextCache = new CFDContextCache(this.parseCache, this.matchPolicy);
+		job.cfdContextCache.setCountStatements(this.screeningPolicy != null && this.screeningPolicy.screensStatements());
+		job.cfdContextCache.setChangeScoped(this.changeScoped);
+		job.cfdContextCache.setParallelFunctions(this.parallelFunctions);
+		job.meyersContext = new AnalysisContext(
+				new Options(DiffMethod.MEYERS, this.options.getChangeImpact()),
+				job.cfdContextCache);
+		job.gumtreeContext = new AnalysisContext(
+				new Options(DiffMethod.GUMTREE, this.options.getChangeImpact()),
+				job.cfdContextCache);
 
-		try {
-			/* We'll be performing two analyses: once for Gumtree and once for Meyers. */
-			Map<SourceCodeFileChange, AnnotationFactBase> gumtreeAnnotations = new HashMap<SourceCodeFileChange, AnnotationFactBase>();
-			Map<SourceCodeFileChange, AnnotationFactBase> meyersAnnotations = new HashMap<SourceCodeFileChange, AnnotationFactBase>();
-			
-			Options options = Options.getInstance();
-			CommitAnalysis commitAnalysis = commitAnalysisFactory.newInstance();
-
-			/* Run the first analysis with Meyers diff. */
-			options.setDiffMethod(DiffMethod.MEYERS);
-			commitAnalysis.analyze(commit);
-			for(SourceCodeFileChange fileChange : commit.sourceCodeFileChanges)
-				meyersAnnotations.put(fileChange, AnnotationFactBase.getInstance(fileChange));
-
-			/* Reset the annotations for the next run. */
-			for(SourceCodeFileChange fileChange : commit.sourceCodeFileChanges)
-				AnnotationFactBase.removeInstance(fileChange);
-
-			/* Run the first analysis with GumTree diff. */
-			options.setDiffMethod(DiffMethod.GUMTREE);
-			commitAnalysis.analyze(commit);
-			for(SourceCodeFileChange fileChange : commit.sourceCodeFileChanges)
-				gumtreeAnnotations.put(fileChange, AnnotationFactBase.getInstance(fileChange));
-
-			/* Post-process to aggregate metrics. */
-			for(SourceCodeFileChange fileChange : commit.sourceCodeFileChanges) {
-				AnnotationFactBase gumTreeFactBase = gumtreeAnnotations.get(fileChange);
-				AnnotationFactBase meyersFactBase = meyersAnnotations.get(fileChange);
-				if(gumTreeFactBase != null && meyersFactBase != null) {
-					this.postProc.process(commit, fileChange, gumTreeFactBase, meyersFactBase);
-					System.out.println(this.postProc.toString());
-				}
-				else {
-					System.out.println("GitProjectAnalysis::analyzeDiff -- WARNING -- FactBase missing");
-				}
+	}
+
+	/**
+	 * Runs the Meyers and GumTree passes over the files in the commit that
+	 * were not replayed from the memo.
+	 * @param job A fetched commit pair.
+	 */
+	private void analyzeFlow(CommitJob job) throws Exception {
+
+		if(job.commit == null || job.commit.sourceCodeFileChanges.isEmpty()) return;
+
+		/* Screen by the number of modified statements. This needs the files
+		 * to be matched (which the flow analysis would do anyway). Unless the
+		 * CFGs are change-scoped, the CFGs of the screened files are built
+		 * too, but they are not flow analyzed. */
+		if(this.screeningPolicy != null && this.screeningPolicy.screensStatements()) {
+			job.commitAnalysis.difference(job.commit, job.cfdContextCache);
+			for(SourceCodeFileChange fileChange : job.commit.sourceCodeFileChanges) {
+				if(fileChange.screened == null)
+					fileChange.screened = this.screeningPolicy.screenStatements(fileChange.changedStatements);
 			}
-			
 		}
-		catch(Exception ignore) {
-			System.err.println("Ignoring exception in ProjectAnalysis.runSDJSB.\nBuggy Revision: " + buggyRevision + "\nBug Fixing Revision: " + bugFixingRevision);
-//			throw ignore;
+
+		/* Run the first analysis with Meyers diff. */
+		job.commitAnalysis.analyze(job.commit, job.meyersContext);
+
+		/* Run the second analysis with GumTree diff. */
+		job.commitAnalysis.analyze(job.commit, job.gumtreeContext);
+
+		/* The CFGs are no longer needed. */
+		job.cfdContextCache.clear();
+
+	}
+
+	/**
+	 * Aggregates the annotations of each file into metrics and stores the
+	 * results of the analyzed files in the memo.
+	 * @param job An analyzed commit pair.
+	 */
+	private void postProcess(CommitJob job) throws Exception {
+
+		if(job.commit == null) return;
+
+		/* Post-process to aggregate metrics. */
+		job.commit.sourceCodeFileChanges = job.files;
+		for(SourceCodeFileChange fileChange : job.files) {
+			AnnotationFactBase gumTreeFactBase;
+			AnnotationFactBase meyersFactBase;
+			AnalysisMemo.Entry entry = job.memoized.get(fileChange);
+			if(entry != null) {
+				fileChange.analysisRuntime = entry.runtime;
+				fileChange.matchStrategy = entry.matchStrategy;
+				gumTreeFactBase = AnalysisMemo.Entry.toFactBase(fileChange, entry.gumtreeAnnotations);
+				meyersFactBase = AnalysisMemo.Entry.toFactBase(fileChange, entry.meyersAnnotations);
+			}
+			else {
+				gumTreeFactBase = job.gumtreeContext.getAnnotationFactBase(fileChange);
+				meyersFactBase = job.meyersContext.getAnnotationFactBase(fileChange);
+				if(fileChange.screened == null)
+					this.memoize(job.memoKeys.get(fileChange), fileChange, gumTreeFactBase, meyersFactBase);
+			}
+			job.result.rows.add(this.postProc.getRow(job.commit, fileChange, gumTreeFactBase, meyersFactBase));
+			System.out.println(this.postProc.toString());
 		}
-		catch(Error e) {
-			System.err.println("Ignoring error in ProjectAnalysis.runSDJSB.\nBuggy Revision: " + buggyRevision + "\nBug Fixing Revision: " + bugFixingRevision);
-//			throw e;
+
+	}
+
+	/**
+	 * Stores the results for a file in the memo.
+	 * @param key The memo key for the file, or {@code null} if the results
+	 * 		  should not be stored.
+	 */
+	private void memoize(String key, SourceCodeFileChange fileChange,
+						 AnnotationFactBase gumTreeFactBase,
+						 AnnotationFactBase meyersFactBase) {
+		if(key == null) return;
+		try {
+			this.memo.put(key, fileChange, gumTreeFactBase, meyersFactBase);
+		} catch (IOException e) {
+			logger.warn("[MEMO] Could not store the results for {}: {}", fileChange.repairedFile, e.getMessage());
 		}
+	}
+
+	/**
+	 * @return Identifies the analysis configuration for the memo and the
+	 * 		   checkpoint. Results are only reused for the same analysis,
+	 * 		   change impact, screening policy, match policy and CFG
+	 * 		   build mode.
+	 */
+	private String getConfiguration() {
+		String configuration = this.commitAnalysisFactory.getClass().getName() + " " + this.options.getChangeImpact();
+		if(this.screeningPolicy != null) configuration += " screen:" + this.screeningPolicy;
+		/* Functions are pre-matched by default, so the effective setting is
+		 * recorded even without a match policy. */
+		configuration += " " + (this.matchPolicy != null ? this.matchPolicy.toString() : "prematch=true");
+
+		/* CFG node and edge ids follow the build order in change-scoped mode.
+		 * The ids appear in the results (e.g., the address of 'this'), so
+		 * results from the two modes cannot be mixed. */
+		if(this.changeScoped) configuration += " change-scoped";
+		return configuration;
+	}
 
+	/**
+	 * Reads the contents of both versions of a changed file.
+	 * @param fileChange The file change to fill in.
+	 * @param diff The diff entry of the file change.
+	 */
+	private void readFiles(SourceCodeFileChange fileChange, DiffEntry diff,
+						   String buggyRevision, String bugFixingRevision) throws IOException {
+		fileChange.buggyCode = this.readBlob(diff.getOldId(), buggyRevision, diff.getOldPath());
+		fileChange.repairedCode = this.readBlob(diff.getNewId(), bugFixingRevision, diff.getNewPath());
+	}
+
+	/**
+	 * Reads the contents of a file in a diff. The diff entry carries the blob
+	 * id of the file, so the blob is read directly from the blob store
+	 * instead of resolving the revision and walking its tree.
+	 * @param id The blob id from the diff entry.
+	 * @param revSpec The commit id (used if the blob id is abbreviated).
+	 * @param path The path to the file (used if the blob id is abbreviated).
+	 * @return The contents of the text file.
+	 */
+	private String readBlob(AbbreviatedObjectId id, String revSpec, String path) throws IOException {
+		if(id.isComplete()) return this.blobStore.getBlob(id.toObjectId());
+		return this.fetchBlob(revSpec, path);
 	}
 
 	/**
@@ -272,6 +918,18 @@ public class GitProjectAnalysis extends GitProject {
 		return new GitProjectAnalysis(gitProject, commitAnalysisFactory, postProc);
 	}
 
+	/**
+	 * Creates a new GitProjectAnalysis instance from a git project that has
+	 * already been cloned or opened.
+	 *
+	 * @param gitProject The git project.
+	 * @param commitAnalysis The analysis to run on each commit.
+	 * @return An instance of GitProjectAnalysis.
+	 */
+	public static GitProjectAnalysis fromGitProject(GitProject gitProject, AnnotationMetricsPostprocessor postProc, ICommitAnalysisFactory commitAnalysisFactory) {
+		return new GitProjectAnalysis(gitProject, commitAnalysisFactory, postProc);
+	}
+
 	/**
 	 * Creates a new GitProjectAnalysis instance from a URI.
 	 *
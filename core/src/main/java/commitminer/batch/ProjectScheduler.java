@@ -0,0 +1,169 @@
+package commitminer.batch;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Analyzes several projects at once.
+ *
+ * Projects are started in order of their estimated cost (largest first), so
+ * the largest project does not become the long tail of the run. The commits
+ * of all projects are analyzed on one shared work-stealing pool. When there
+ * are no more projects to start, the workers keep busy with the commits of
+ * the projects that are still being analyzed, instead of sitting idle until
+ * the last project finishes.
+ *
+ * Projects may be added after the scheduler has started (e.g., as they are
+ * cloned). A project that is added while a worker is free starts right away;
+ * otherwise it waits with the other added projects, largest first.
+ */
+public class ProjectScheduler {
+
+	protected static final Logger logger = LogManager.getLogger(ProjectScheduler.class);
+
+	/** The number of threads that analyze commits. **/
+	private int nThreads;
+
+	/** The projects that have not been started, largest first. **/
+	private PriorityBlockingQueue<Pair<GitProjectAnalysis, Long>> waiting;
+
+	/** The commits of every project are analyzed on this pool. **/
+	private ForkJoinPool pool;
+
+	/** Each project is driven by a thread, which walks the history, submits
+	 * commits to the pool and writes the results. **/
+	private ExecutorService drivers;
+
+	/** One per project that has been added since the scheduler started. **/
+	private List<Future<?>> analyses;
+
+	/** True once the projects may start. **/
+	private boolean started;
+
+	/**
+	 * @param nThreads The number of threads that analyze commits.
+	 */
+	public ProjectScheduler(int nThreads) {
+		this.nThreads = nThreads;
+		this.waiting = new PriorityBlockingQueue<Pair<GitProjectAnalysis, Long>>(11,
+				new Comparator<Pair<GitProjectAnalysis, Long>>() {
+					@Override
+					public int compare(Pair<GitProjectAnalysis, Long> a, Pair<GitProjectAnalysis, Long> b) {
+						return Long.compare(b.getRight(), a.getRight());
+					}
+				});
+		this.analyses = new LinkedList<Future<?>>();
+		this.started = false;
+	}
+
+	/**
+	 * Adds a project to the run and estimates its cost. If the scheduler has
+	 * started, the project is analyzed as soon as a driver is free.
+	 * @param project The project to analyze.
+	 */
+	public void add(GitProjectAnalysis project) {
+		long cost;
+		try {
+			cost = project.getCostEstimate();
+		} catch (IOException e) {
+			/* Projects we cannot estimate are started last. */
+			logger.warn("[SCHEDULER] Could not estimate the cost of {}: {}", project.getURI(), e.getMessage());
+			cost = 0;
+		}
+		logger.info("[SCHEDULER] {} estimated cost {}", project.getURI(), cost);
+
+		synchronized(this) {
+			this.waiting.add(Pair.of(project, cost));
+			if(this.started) this.startNext();
+		}
+	}
+
+	/**
+	 * Starts analyzing the projects that have been added, largest first.
+	 */
+	public synchronized void start() {
+		if(this.started) return;
+		this.started = true;
+
+		this.pool = new ForkJoinPool(this.nThreads);
+
+		/* The drivers mostly wait on the pool, so they do not compete with
+		 * it for CPU. */
+		this.drivers = Executors.newFixedThreadPool(this.nThreads);
+
+		for(int i = this.waiting.size(); i > 0; i--) this.startNext();
+	}
+
+	/**
+	 * Waits for every project that has been added to finish, then stops the
+	 * threads. Projects must not be added after this is called.
+	 * @throws InterruptedException
+	 */
+	public void finish() throws InterruptedException {
+		this.start();
+		try {
+			while(true) {
+				Future<?> analysis;
+				synchronized(this) {
+					if(this.analyses.isEmpty()) break;
+					analysis = this.analyses.remove(0);
+				}
+				try {
+					analysis.get();
+				} catch (ExecutionException e) {
+					logger.error("[SCHEDULER] {}", e.getCause().getMessage());
+				}
+			}
+		}
+		finally {
+			this.drivers.shutdownNow();
+			this.pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Analyzes the projects that have been added and waits for them to
+	 * finish.
+	 * @throws InterruptedException
+	 */
+	public void run() throws InterruptedException {
+		this.start();
+		this.finish();
+	}
+
+	/**
+	 * Queues a driver that analyzes the largest waiting project. The project
+	 * is picked when the driver starts, not when it is queued, so a large
+	 * project added later can overtake smaller projects added earlier.
+	 */
+	private void startNext() {
+		this.analyses.add(this.drivers.submit(new Runnable() {
+			@Override
+			public void run() {
+				Pair<GitProjectAnalysis, Long> next = waiting.poll();
+				if(next == null) return;
+				GitProjectAnalysis project = next.getLeft();
+				project.setPool(pool);
+				try {
+					project.analyze();
+				} catch (Exception e) {
+					logger.error("[IMPORTANT] Project {} threw an exception: {}", project.getURI(), e.getMessage());
+				}
+				logger.info(" [TASK FINALIZED] {}", project.getURI());
+			}
+		}));
+	}
+
+}
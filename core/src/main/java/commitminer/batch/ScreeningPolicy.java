@@ -0,0 +1,175 @@
+package commitminer.batch;
+
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+import commitminer.analysis.Commit.Type;
+import commitminer.analysis.SourceCodeFileChange;
+import commitminer.diff.line.DiffMatchPatch;
+
+/**
+ * Decides which file changes are worth the full flow analysis.
+ *
+ * The flow analysis (GumTree matching, CFG construction and abstract
+ * interpretation) is by far the most expensive part of analyzing a commit.
+ * Before it runs, each file change is screened by cheap measures, in order
+ * of cost:
+ *  1. the commit message type,
+ *  2. the size of the line diff,
+ *  3. the number of modified statements (see
+ *     {@code ChangeComplexityVisitor}), which needs the AST match but not
+ *     the flow analysis.
+ *
+ * A file change that fails a check is screened out: it is not flow
+ * analyzed, and its row records which check it failed and the threshold
+ * (e.g., "SCREENED lines 2400 > 2000"). The type check is made before the
+ * files are read from git, so the files of a commit that fails it are
+ * never read and their rows have no line metrics.
+ */
+public class ScreeningPolicy {
+
+	/** The commit types to analyze. **/
+	public Set<Type> types;
+
+	/** The minimum number of changed lines (inclusive). **/
+	public int minLines;
+
+	/** The maximum number of changed lines (inclusive, zero for no limit). **/
+	public int maxLines;
+
+	/** The minimum number of modified statements (inclusive). **/
+	public int minStatements;
+
+	/** The maximum number of modified statements (inclusive, zero for no
+	 * limit). **/
+	public int maxStatements;
+
+	/**
+	 * Creates a policy that escalates every file change.
+	 */
+	public ScreeningPolicy() {
+		this.types = EnumSet.allOf(Type.class);
+		this.minLines = 0;
+		this.maxLines = 0;
+		this.minStatements = 0;
+		this.maxStatements = 0;
+	}
+
+	/**
+	 * @return The reason the commit type is screened out, or {@code null} if
+	 * 		   commits of this type are analyzed.
+	 */
+	public String screenType(Type type) {
+		if(this.types.contains(type)) return null;
+		return "type " + type;
+	}
+
+	/**
+	 * @return The reason the file change is screened out by the size of its
+	 * 		   line diff, or {@code null} if it passes.
+	 */
+	public String screenLines(SourceCodeFileChange fileChange) {
+		if(this.minLines <= 0 && this.maxLines <= 0) return null;
+		return screen("lines", countChangedLines(fileChange), this.minLines, this.maxLines);
+	}
+
+	/**
+	 * @return True if the number of modified statements is checked, in which
+	 * 		   case the files must be matched before they are screened.
+	 */
+	public boolean screensStatements() {
+		return this.minStatements > 0 || this.maxStatements > 0;
+	}
+
+	/**
+	 * @param statements The number of modified statements, or a negative
+	 * 		  number if the file could not be matched.
+	 * @return The reason the file change is screened out by the number of
+	 * 		   modified statements, or {@code null} if it passes.
+	 */
+	public String screenStatements(int statements) {
+		if(statements < 0 || !this.screensStatements()) return null;
+		return screen("statements", statements, this.minStatements, this.maxStatements);
+	}
+
+	/**
+	 * @return The reason a measure is outside its thresholds, or {@code null}.
+	 */
+	private static String screen(String measure, int value, int min, int max) {
+		if(value < min) return measure + " " + value + " < " + min;
+		if(max > 0 && value > max) return measure + " " + value + " > " + max;
+		return null;
+	}
+
+	/**
+	 * @return The number of lines inserted or deleted by a file change.
+	 */
+	public static int countChangedLines(SourceCodeFileChange fileChange) {
+		int lines = 0;
+		DiffMatchPatch dmp = new DiffMatchPatch();
+		/* In line mode, each character of a diff is a line. */
+		for(DiffMatchPatch.Diff diff : dmp.diff_main_line_mode(fileChange.buggyCode, fileChange.repairedCode)) {
+			if(diff.operation != DiffMatchPatch.Operation.EQUAL) lines += diff.text.length();
+		}
+		return lines;
+	}
+
+	/**
+	 * Reads a policy from the command line, e.g.,
+	 * {@code lines=1:2000,statements=1:300,types=BUG_FIX+OTHER}. A missing
+	 * maximum (e.g., {@code lines=1:}) means no limit.
+	 * @param spec The thresholds.
+	 * @return The policy.
+	 * @throws IllegalArgumentException when the thresholds cannot be read.
+	 */
+	public static ScreeningPolicy fromString(String spec) {
+		ScreeningPolicy policy = new ScreeningPolicy();
+		for(String setting : spec.split(",")) {
+			String[] keyValue = setting.trim().split("=");
+			if(keyValue.length != 2) throw new IllegalArgumentException("Expected key=value: " + setting);
+			String key = keyValue[0].trim();
+			String value = keyValue[1].trim();
+			switch(key) {
+			case "lines":
+				int[] lines = parseRange(value);
+				policy.minLines = lines[0];
+				policy.maxLines = lines[1];
+				break;
+			case "statements":
+				int[] statements = parseRange(value);
+				policy.minStatements = statements[0];
+				policy.maxStatements = statements[1];
+				break;
+			case "types":
+				policy.types = EnumSet.noneOf(Type.class);
+				for(String type : value.split("\\+")) policy.types.add(Type.valueOf(type.trim()));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown screening threshold: " + key);
+			}
+		}
+		return policy;
+	}
+
+	/**
+	 * @return The minimum and maximum of a "min:max" range.
+	 */
+	private static int[] parseRange(String range) {
+		String[] bounds = range.split(":", -1);
+		if(bounds.length != 2) throw new IllegalArgumentException("Expected min:max: " + range);
+		int min = bounds[0].trim().isEmpty() ? 0 : Integer.parseInt(bounds[0].trim());
+		int max = bounds[1].trim().isEmpty() ? 0 : Integer.parseInt(bounds[1].trim());
+		return new int[] { min, max };
+	}
+
+	@Override
+	public String toString() {
+		LinkedList<String> types = new LinkedList<String>();
+		for(Type type : this.types) types.add(type.toString());
+		return "types=" + String.join("+", types)
+				+ ",lines=" + this.minLines + ":" + (this.maxLines > 0 ? this.maxLines : "")
+				+ ",statements=" + this.minStatements + ":" + (this.maxStatements > 0 ? this.maxStatements : "");
+	}
+
+}
@@ -16,6 +16,13 @@ public class CFDContext {
 	public List<CFG> srcCFGs;
 	public List<CFG> dstCFGs;
 
+	/** How the ASTs were matched. **/
+	public MatchPolicy.Strategy matchStrategy;
+
+	/** Builds the CFGs that are not in {@code srcCFGs} and {@code dstCFGs}
+	 * on demand. Null if every CFG has been built. **/
+	public LazyCFGs lazyCFGs;
+
 	/**
 	 * @param srcScript The root node for the class or script.
 	 * @param dstScript The root node for the class or script.
@@ -27,6 +34,7 @@ public class CFDContext {
 		this.dstScript = dstScript;
 		this.srcCFGs = srcCFGs;
 		this.dstCFGs = dstCFGs;
+		this.matchStrategy = MatchPolicy.Strategy.GUMTREE;
 	}
 
 }
@@ -0,0 +1,186 @@
+package commitminer.cfd;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import commitminer.analysis.SourceCodeFileChange;
+import commitminer.cfg.CFG;
+import commitminer.cfg.CFGFactory;
+
+/**
+ * Stores the results of control flow differencing the files in a commit, so
+ * that the files are parsed, matched and converted to CFGs only once no
+ * matter how many analyses are run on the commit.
+ *
+ * Results are keyed by the file, the CFG factory and whether the AST was
+ * pre-processed, since these determine the ASTs and CFGs that are built. The
+ * diff method is not part of the key: AST nodes are classified the same way
+ * for both the GUMTREE and MEYERS passes (see
+ * {@code ControlFlowDifferencing.setup}).
+ */
+public class CFDContextCache {
+
+	/** The control flow differencing results for each file and configuration. **/
+	private Map<SourceCodeFileChange, Map<String, CFDContext>> contexts;
+
+	/** The parsed trees, which outlive the commit. May be {@code null}. **/
+	private ParseCache parseCache;
+
+	/** How the ASTs are matched. May be {@code null}. **/
+	private MatchPolicy matchPolicy;
+
+	/** Count the modified statements of each differenced file. **/
+	private boolean countStatements;
+
+	/** Only build the CFGs of changed functions up front. **/
+	private boolean changeScoped;
+
+	/** Build the CFGs of each function concurrently. **/
+	private boolean parallelFunctions;
+
+	public CFDContextCache() {
+		this(null, null);
+	}
+
+	/**
+	 * @param parseCache The parsed trees to use when a file is differenced.
+	 * 		  Unlike the differencing results, parsed trees are shared by
+	 * 		  commits. May be {@code null}.
+	 * @param matchPolicy How the ASTs are matched when a file is
+	 * 		  differenced, or {@code null} to match every file with GumTree.
+	 */
+	public CFDContextCache(ParseCache parseCache, MatchPolicy matchPolicy) {
+		this.contexts = new HashMap<SourceCodeFileChange, Map<String, CFDContext>>();
+		this.parseCache = parseCache;
+		this.matchPolicy = matchPolicy;
+	}
+
+	/**
+	 * @param changeScoped True if only the CFGs of changed functions should
+	 * 		  be built when a file is differenced. The other CFGs are built
+	 * 		  when an analysis needs them.
+	 */
+	public void setChangeScoped(boolean changeScoped) {
+		this.changeScoped = changeScoped;
+	}
+
+	/**
+	 * @return True if only the CFGs of changed functions are built when a
+	 * 		   file is differenced.
+	 */
+	public boolean isChangeScoped() {
+		return this.changeScoped;
+	}
+
+	/**
+	 * @param parallelFunctions True if the CFGs of each function should be
+	 * 		  built concurrently when a file is differenced.
+	 */
+	public void setParallelFunctions(boolean parallelFunctions) {
+		this.parallelFunctions = parallelFunctions;
+	}
+
+	/**
+	 * @return True if the CFGs of each function are built concurrently when
+	 * 		   a file is differenced.
+	 */
+	public boolean isParallelFunctions() {
+		return this.parallelFunctions;
+	}
+
+	/**
+	 * @return The parsed trees to use when a file is differenced, or
+	 * 		   {@code null} if files are always parsed.
+	 */
+	public ParseCache getParseCache() {
+		return this.parseCache;
+	}
+
+	/**
+	 * @return How the ASTs are matched when a file is differenced, or
+	 * 		   {@code null} if every file is matched with GumTree.
+	 */
+	public MatchPolicy getMatchPolicy() {
+		return this.matchPolicy;
+	}
+
+	/**
+	 * @param countStatements True if the number of modified statements
+	 * 		  should be counted when a file is differenced (e.g., to screen
+	 * 		  files by the number of modified statements).
+	 */
+	public void setCountStatements(boolean countStatements) {
+		this.countStatements = countStatements;
+	}
+
+	/**
+	 * @return True if the number of modified statements is counted when a
+	 * 		   file is differenced.
+	 */
+	public boolean isCountStatements() {
+		return this.countStatements;
+	}
+
+	/**
+	 * Looks up the control flow differencing results for a file. The flow
+	 * analysis states on the CFGs are cleared, so the results can be analyzed
+	 * as if they had just been built.
+	 * @param sourceCodeFileChange The file that was differenced.
+	 * @param cfgFactory The factory that built the CFGs.
+	 * @param preProcess True if the ASTs were pre-processed.
+	 * @return The cached context, or {@code null} if the file has not been
+	 * 		   differenced with this configuration.
+	 */
+	public synchronized CFDContext get(SourceCodeFileChange sourceCodeFileChange,
+									   CFGFactory cfgFactory, boolean preProcess) {
+
+		Map<String, CFDContext> fileContexts = this.contexts.get(sourceCodeFileChange);
+		if(fileContexts == null) return null;
+
+		CFDContext context = fileContexts.get(getKey(cfgFactory, preProcess));
+		if(context == null) return null;
+
+		/* Reset the results of any earlier flow analysis. */
+		for(CFG cfg : context.srcCFGs) cfg.clearStates();
+		for(CFG cfg : context.dstCFGs) cfg.clearStates();
+
+		return context;
+
+	}
+
+	/**
+	 * Stores the control flow differencing results for a file.
+	 * @param sourceCodeFileChange The file that was differenced.
+	 * @param cfgFactory The factory that built the CFGs.
+	 * @param preProcess True if the ASTs were pre-processed.
+	 * @param context The results of control flow differencing.
+	 */
+	public synchronized void put(SourceCodeFileChange sourceCodeFileChange,
+								 CFGFactory cfgFactory, boolean preProcess,
+								 CFDContext context) {
+
+		Map<String, CFDContext> fileContexts = this.contexts.get(sourceCodeFileChange);
+		if(fileContexts == null) {
+			fileContexts = new HashMap<String, CFDContext>();
+			this.contexts.put(sourceCodeFileChange, fileContexts);
+		}
+
+		fileContexts.put(getKey(cfgFactory, preProcess), context);
+
+	}
+
+	/**
+	 * Drops all the cached results. The parsed trees are kept.
+	 */
+	public synchronized void clear() {
+		this.contexts.clear();
+	}
+
+	/**
+	 * @return The key for a differencing configuration.
+	 */
+	private static String getKey(CFGFactory cfgFactory, boolean preProcess) {
+		return cfgFactory.getClass().getName() + (preProcess ? " -pp" : "");
+	}
+
+}
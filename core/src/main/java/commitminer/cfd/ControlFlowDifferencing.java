@@ -3,8 +3,10 @@ package commitminer.cfd;
 import java.io.IOException;
 import java.io.InvalidClassException;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
@@ -20,6 +22,7 @@ import com.github.gumtreediff.tree.TreeContext;
 
 import commitminer.analysis.options.Options;
 import commitminer.cfg.CFG;
+import commitminer.cfg.CFGBuilder;
 import commitminer.cfg.CFGFactory;
 import commitminer.cfg.diff.CFGDifferencing;
 import commitminer.diff.line.LineMatcher;
@@ -59,12 +62,31 @@ public class ControlFlowDifferencing {
 	 * @throws Exception thrown when a problem occurs during control flow differencing.
 	 */
 	public ControlFlowDifferencing(CFGFactory cfgFactory, String[] args, String srcSourceCode, String dstSourceCode) throws Exception {
+		this(cfgFactory, args, srcSourceCode, dstSourceCode, null, null, null);
+	}
+
+	/**
+	 * Creates the analysis context by control flow differencing the source
+	 * and destination files (provided as a string), re-using the parsed
+	 * trees of files that have been parsed before.
+	 * @param cfgFactory The factory class that builds the CFGs.
+	 * @param args The analysis/differencing options.
+	 * @param srcSourceCode The source file as a string.
+	 * @param dstSourceCode The destination file as a string.
+	 * @param srcBlobID The blob id of the source file (may be {@code null}).
+	 * @param dstBlobID The blob id of the destination file (may be {@code null}).
+	 * @param parseCache The parsed trees (may be {@code null}).
+	 * @throws Exception thrown when a problem occurs during control flow differencing.
+	 */
+	public ControlFlowDifferencing(CFGFactory cfgFactory, String[] args, String srcSourceCode, String dstSourceCode,
+								   String srcBlobID, String dstBlobID, ParseCache parseCache) throws Exception {
 
 		/* Get the analysis options. */
 		DiffOptions options = ControlFlowDifferencing.getAnalysisOptions(args);
 
 		/* Set up the analysis context. */
-		this.context =  ControlFlowDifferencing.setup(cfgFactory, options, srcSourceCode, dstSourceCode);
+		this.context =  ControlFlowDifferencing.setup(cfgFactory, options, srcSourceCode, dstSourceCode,
+													  srcBlobID, dstBlobID, parseCache);
 
 	}
 
@@ -108,35 +130,91 @@ public class ControlFlowDifferencing {
 	 * @throws Exception
 	 */
 	public static CFDContext setup(CFGFactory cfgFactory, DiffOptions options, String srcSourceCode, String dstSourceCode) throws Exception {
+		return setup(cfgFactory, options, srcSourceCode, dstSourceCode, null, null, null);
+	}
+
+	/**
+	 * Compute the control flow changes.
+	 * @param options The command line analysis options.
+	 * @param srcBlobID The blob id of the source file, which identifies its
+	 * 		  tree in the parse cache (may be {@code null}).
+	 * @param dstBlobID The blob id of the destination file (may be {@code null}).
+	 * @param parseCache The parsed trees. If {@code null}, both files are parsed.
+	 * @return The context for a control flow differencing analysis.
+	 * @throws Exception
+	 */
+	public static CFDContext setup(CFGFactory cfgFactory, DiffOptions options, String srcSourceCode, String dstSourceCode,
+								   String srcBlobID, String dstBlobID, ParseCache parseCache) throws Exception {
 
         /* Create the abstract GumTree representations of the ASTs. */
         TreeContext src = null;
         TreeContext dst = null;
         if(srcSourceCode == null) src = ControlFlowDifferencing.createGumTree(cfgFactory, options.getSrc(), options.getPreProcess());
+        else if(parseCache != null) src = parseCache.get(cfgFactory, srcBlobID, srcSourceCode, options.getSrc(), options.getPreProcess());
         else src = ControlFlowDifferencing.createGumTree(cfgFactory, srcSourceCode, options.getSrc(), options.getPreProcess());
         if(dstSourceCode == null) dst = ControlFlowDifferencing.createGumTree(cfgFactory, options.getDst(), options.getPreProcess());
+        else if(parseCache != null) dst = parseCache.get(cfgFactory, dstBlobID, dstSourceCode, options.getDst(), options.getPreProcess());
         else dst = ControlFlowDifferencing.createGumTree(cfgFactory, dstSourceCode, options.getDst(), options.getPreProcess());
 
-		/* Match the source tree nodes to the destination tree nodes. */
-        Matcher matcher = ControlFlowDifferencing.matchTreeNodes(src.getRoot(), dst.getRoot());
+		/* Pin the functions that were not changed, so that only the rest of
+		 * the ASTs is given to the matcher. */
+        MatchPolicy matchPolicy = options.getMatchPolicy();
+        FunctionPreMatcher preMatcher = null;
+        if(matchPolicy == null || matchPolicy.preMatch) {
+        	preMatcher = new FunctionPreMatcher(src, dst);
+        	preMatcher.detach();
+        }
+
+		/* Match the source tree nodes to the destination tree nodes. Large
+		 * files may be matched with a cheaper strategy. */
+        MatchPolicy.Strategy strategy = matchPolicy == null ? MatchPolicy.Strategy.GUMTREE
+        		: matchPolicy.choose(src.getRoot(), dst.getRoot());
+        Matcher matcher = MatchPolicy.match(strategy, src.getRoot(), dst.getRoot(), srcSourceCode, dstSourceCode);
+        if(preMatcher != null) preMatcher.restore(matcher.getMappings());
 
         /* Apply change classifications to nodes in the GumTrees. */
-//        if(Options.getInstance().getDiffMethod() == Options.DiffMethod.MEYERS)
+//        if(AnalysisContext.getCurrentOptions().getDiffMethod() == Options.DiffMethod.MEYERS)
 //			ControlFlowDifferencing.classifyTreeNodesMeyers(srcSourceCode, dstSourceCode, src, dst, matcher);
 //        else
 			ControlFlowDifferencing.classifyTreeNodes(src, dst, matcher);
 
+		ClassifiedASTNode srcRoot = src.getRoot().getClassifiedASTNode();
+		ClassifiedASTNode dstRoot = dst.getRoot().getClassifiedASTNode();
+
+		/* In change-scoped mode, only create the CFGs of the changed
+		 * functions. The other CFGs are created on demand. */
+		CFGBuilder srcBuilder = options.getChangeScoped() ? cfgFactory.newCFGBuilder(srcRoot) : null;
+		CFGBuilder dstBuilder = options.getChangeScoped() ? cfgFactory.newCFGBuilder(dstRoot) : null;
+		if(srcBuilder != null && dstBuilder != null) {
+			List<CFG> srcCFGs = new LinkedList<CFG>();
+			List<CFG> dstCFGs = new LinkedList<CFG>();
+			LazyCFGs lazyCFGs = new LazyCFGs(srcBuilder, dstBuilder, srcCFGs, dstCFGs);
+			lazyCFGs.buildChanged();
+			CFDContext context = new CFDContext(srcRoot, dstRoot, srcCFGs, dstCFGs);
+			context.matchStrategy = strategy;
+			context.lazyCFGs = lazyCFGs;
+			return context;
+		}
+
 		/* Create the CFGs. */
-		List<CFG> srcCFGs = cfgFactory.createCFGs(src.getRoot().getClassifiedASTNode());
-		List<CFG> dstCFGs = cfgFactory.createCFGs(dst.getRoot().getClassifiedASTNode());
+		List<CFG> srcCFGs;
+		List<CFG> dstCFGs;
+		if(options.getParallelFunctions()) {
+			srcCFGs = cfgFactory.createCFGs(srcRoot, ForkJoinPool.commonPool());
+			dstCFGs = cfgFactory.createCFGs(dstRoot, ForkJoinPool.commonPool());
+		}
+		else {
+			srcCFGs = cfgFactory.createCFGs(srcRoot);
+			dstCFGs = cfgFactory.createCFGs(dstRoot);
+		}
 
 		/* Compute changes to CFG elements (nodes, edges and edge labels). */
 		ControlFlowDifferencing.computeCFGChanges(srcCFGs, dstCFGs);
 
 		/* Return the set up results (the context for a CFD analysis) */
-		ClassifiedASTNode srcRoot = src.getRoot().getClassifiedASTNode();
-		ClassifiedASTNode dstRoot = dst.getRoot().getClassifiedASTNode();
-		return new CFDContext(srcRoot, dstRoot, srcCFGs, dstCFGs);
+		CFDContext context = new CFDContext(srcRoot, dstRoot, srcCFGs, dstCFGs);
+		context.matchStrategy = strategy;
+		return context;
 
 	}
 
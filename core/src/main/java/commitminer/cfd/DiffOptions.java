@@ -17,6 +17,15 @@ public class DiffOptions {
 	@Option(name="-pp", aliases={"--preprocess"}, usage="Pre-process the AST before running GumTree.")
 	private boolean preProcess = false;
 
+	@Option(name="-mp", aliases={"--match-policy"}, usage="Match large files with a cheaper strategy (e.g., topdown=20000,lines=100000 or strategy=TOPDOWN).")
+	private String matchPolicy = null;
+
+	@Option(name="-cs", aliases={"--change-scoped"}, usage="Only build the CFGs of changed functions up front. The other CFGs are built when the analysis needs them.")
+	private boolean changeScoped = false;
+
+	@Option(name="-pf", aliases={"--parallel-functions"}, usage="Build the CFGs of each function concurrently. The CFGs are the same as when they are built sequentially.")
+	private boolean parallelFunctions = false;
+
 	@Argument(index=0, required=true)
 	private String src;
 
@@ -43,6 +52,24 @@ public class DiffOptions {
 		return preProcess;
 	}
 
+	/**
+	 * @return The policy for matching the ASTs, or {@code null} to match
+	 * 		   every file with GumTree.
+	 * @throws IllegalArgumentException when the policy cannot be read.
+	 */
+	public MatchPolicy getMatchPolicy() {
+		if(matchPolicy == null) return null;
+		return MatchPolicy.fromString(matchPolicy);
+	}
+
+	public boolean getChangeScoped() {
+		return changeScoped;
+	}
+
+	public boolean getParallelFunctions() {
+		return parallelFunctions;
+	}
+
 	public String[] getGenerators() {
 		if (generators == null) return null;
 		else return generators.split("\\.");
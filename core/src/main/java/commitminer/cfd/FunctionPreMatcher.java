@@ -0,0 +1,182 @@
+package commitminer.cfd;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+import org.mozilla.javascript.ast.FunctionNode;
+
+import com.github.gumtreediff.matchers.MappingStore;
+import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.TreeContext;
+import com.github.gumtreediff.tree.TreeUtils;
+
+/**
+ * Matches the functions that a commit did not change before the ASTs are
+ * given to the tree matcher.
+ *
+ * Most commits change a few functions in files with many. The outermost
+ * functions of the source and destination ASTs are hashed by their
+ * structure (node types and labels). A function whose hash appears exactly
+ * once in each AST, and whose subtrees are identical, is pinned: it is
+ * removed from both ASTs before matching, so the matcher only sees the
+ * code around the changed functions. After matching, the pinned functions
+ * are put back and every node in them is mapped to its copy, so they are
+ * classified as unchanged (or moved, if their position changed).
+ */
+public class FunctionPreMatcher {
+
+	private TreeContext src;
+	private TreeContext dst;
+
+	/** The pinned functions (source and destination). **/
+	private List<ITree[]> pinned;
+
+	/** The detached functions, in the order they were detached. **/
+	private List<Detached> detached;
+
+	/**
+	 * @param src The source AST.
+	 * @param dst The destination AST.
+	 */
+	public FunctionPreMatcher(TreeContext src, TreeContext dst) {
+		this.src = src;
+		this.dst = dst;
+		this.pinned = new LinkedList<ITree[]>();
+		this.detached = new LinkedList<Detached>();
+	}
+
+	/**
+	 * Pins the unchanged functions and removes them from the ASTs.
+	 * @return The number of nodes (in each AST) that were pinned.
+	 */
+	public int detach() {
+
+		Map<Integer, List<ITree>> srcFunctions = getFunctionsByHash(this.src.getRoot());
+		Map<Integer, List<ITree>> dstFunctions = getFunctionsByHash(this.dst.getRoot());
+
+		int nodes = 0;
+		for(Map.Entry<Integer, List<ITree>> entry : srcFunctions.entrySet()) {
+			List<ITree> dstCandidates = dstFunctions.get(entry.getKey());
+			if(entry.getValue().size() != 1 || dstCandidates == null || dstCandidates.size() != 1) continue;
+			ITree srcFunction = entry.getValue().get(0);
+			ITree dstFunction = dstCandidates.get(0);
+			if(!isIdentical(srcFunction, dstFunction)) continue;
+			this.pinned.add(new ITree[] { srcFunction, dstFunction });
+			nodes += srcFunction.getSize();
+		}
+		if(this.pinned.isEmpty()) return 0;
+
+		for(ITree[] pair : this.pinned) {
+			this.detached.add(new Detached(pair[0]));
+			this.detached.add(new Detached(pair[1]));
+		}
+
+		/* Refresh the sizes, heights and ids of the smaller ASTs. */
+		this.src.validate();
+		this.dst.validate();
+
+		return nodes;
+
+	}
+
+	/**
+	 * Puts the pinned functions back into the ASTs and maps their nodes.
+	 * @param mappings The mappings from the matcher.
+	 */
+	public void restore(MappingStore mappings) {
+
+		if(this.pinned.isEmpty()) return;
+
+		/* Re-attach in reverse order, so each function goes back to the
+		 * index it was removed from. */
+		for(int i = this.detached.size() - 1; i >= 0; i--) this.detached.get(i).reattach();
+		this.src.validate();
+		this.dst.validate();
+
+		for(ITree[] pair : this.pinned) {
+			Iterator<ITree> srcNodes = TreeUtils.preOrder(pair[0]).iterator();
+			Iterator<ITree> dstNodes = TreeUtils.preOrder(pair[1]).iterator();
+			while(srcNodes.hasNext() && dstNodes.hasNext()) mappings.link(srcNodes.next(), dstNodes.next());
+		}
+
+	}
+
+	/**
+	 * @return The outermost functions in the AST, by their structural hash.
+	 */
+	private static Map<Integer, List<ITree>> getFunctionsByHash(ITree root) {
+
+		Map<Integer, List<ITree>> functions = new HashMap<Integer, List<ITree>>();
+
+		Stack<ITree> stack = new Stack<ITree>();
+		stack.addAll(root.getChildren());
+		while(!stack.isEmpty()) {
+			ITree node = stack.pop();
+			if(node.getClassifiedASTNode() instanceof FunctionNode) {
+				int hash = hash(node);
+				List<ITree> list = functions.get(hash);
+				if(list == null) {
+					list = new LinkedList<ITree>();
+					functions.put(hash, list);
+				}
+				list.add(node);
+			}
+			else {
+				stack.addAll(node.getChildren());
+			}
+		}
+
+		return functions;
+
+	}
+
+	/**
+	 * @return A hash of the types and labels of the nodes in a subtree.
+	 */
+	private static int hash(ITree node) {
+		int hash = 31 * node.getType() + node.getLabel().hashCode();
+		for(ITree child : node.getChildren()) hash = 31 * hash + hash(child);
+		return hash;
+	}
+
+	/**
+	 * @return True if the subtrees have the same shape, types and labels.
+	 */
+	private static boolean isIdentical(ITree a, ITree b) {
+		if(a.getType() != b.getType() || !a.getLabel().equals(b.getLabel())) return false;
+		if(a.getChildren().size() != b.getChildren().size()) return false;
+		for(int i = 0; i < a.getChildren().size(); i++) {
+			if(!isIdentical(a.getChildren().get(i), b.getChildren().get(i))) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * A function that was removed from its parent.
+	 */
+	private static class Detached {
+
+		ITree node;
+		ITree parent;
+		int index;
+
+		Detached(ITree node) {
+			this.node = node;
+			this.parent = node.getParent();
+			this.index = 0;
+			while(this.parent.getChildren().get(this.index) != node) this.index++;
+			this.parent.getChildren().remove(this.index);
+		}
+
+		void reattach() {
+			this.parent.getChildren().add(this.index, this.node);
+			this.node.setParent(this.parent);
+		}
+
+	}
+
+}
@@ -0,0 +1,147 @@
+package commitminer.cfd;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import commitminer.cfg.CFG;
+import commitminer.cfg.CFGBuilder;
+import commitminer.cfg.diff.CFGDifferencing;
+
+import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode;
+
+/**
+ * The CFGs of a source and destination file, built on demand.
+ *
+ * In change-scoped mode, only the CFGs of the scripts and of the functions
+ * that contain changed nodes are built (and differenced) up front. The CFG
+ * of any other function is built the first time the flow analysis asks for
+ * it, together with the CFG of its mapped function on the other side, and
+ * the pair is differenced then. The CFGs of functions the analysis never
+ * reaches are never built.
+ *
+ * Built CFGs are added to the {@code CFDContext} lists, so the lists always
+ * hold every CFG that has been built so far.
+ *
+ * CFG node and edge ids are assigned in build order, so they differ from the
+ * ids of an eager build. The flow analysis uses these ids (e.g., for the
+ * address of 'this'), so its results are only comparable to results built
+ * in the same mode.
+ */
+public class LazyCFGs {
+
+	private CFGBuilder srcBuilder;
+	private CFGBuilder dstBuilder;
+
+	/** The functions that have a CFG (built or not). **/
+	private Set<ClassifiedASTNode> srcFunctions;
+	private Set<ClassifiedASTNode> dstFunctions;
+
+	/** The CFGs that have been built, by function. **/
+	private Map<ClassifiedASTNode, CFG> srcCFGs;
+	private Map<ClassifiedASTNode, CFG> dstCFGs;
+
+	/** The built CFGs, in the order they were built. **/
+	private List<CFG> srcList;
+	private List<CFG> dstList;
+
+	/**
+	 * @param srcBuilder Builds the source CFGs.
+	 * @param dstBuilder Builds the destination CFGs.
+	 * @param srcList Receives the source CFGs as they are built.
+	 * @param dstList Receives the destination CFGs as they are built.
+	 */
+	public LazyCFGs(CFGBuilder srcBuilder, CFGBuilder dstBuilder, List<CFG> srcList, List<CFG> dstList) {
+		this.srcBuilder = srcBuilder;
+		this.dstBuilder = dstBuilder;
+		this.srcFunctions = new HashSet<ClassifiedASTNode>(srcBuilder.getFunctions());
+		this.dstFunctions = new HashSet<ClassifiedASTNode>(dstBuilder.getFunctions());
+		this.srcCFGs = new HashMap<ClassifiedASTNode, CFG>();
+		this.dstCFGs = new HashMap<ClassifiedASTNode, CFG>();
+		this.srcList = srcList;
+		this.dstList = dstList;
+	}
+
+	/**
+	 * Builds the CFGs of the scripts and of the functions that contain
+	 * changed nodes. The ASTs must have been classified.
+	 */
+	public void buildChanged() {
+		for(ClassifiedASTNode function : this.srcBuilder.getChangedFunctions()) this.getSrc(function);
+		for(ClassifiedASTNode function : this.dstBuilder.getChangedFunctions()) this.getDst(function);
+	}
+
+	/**
+	 * Builds the CFGs that have not been built yet.
+	 */
+	public void buildAll() {
+		for(ClassifiedASTNode function : this.srcBuilder.getFunctions()) this.getSrc(function);
+		for(ClassifiedASTNode function : this.dstBuilder.getFunctions()) this.getDst(function);
+	}
+
+	/**
+	 * @param function The source script or function.
+	 * @return The CFG of the function, or {@code null} if the node is not
+	 * 		   a source function.
+	 */
+	public synchronized CFG getSrc(ClassifiedASTNode function) {
+		CFG cfg = this.srcCFGs.get(function);
+		if(cfg != null || !this.srcFunctions.contains(function)) return cfg;
+		cfg = this.build(function, this.srcBuilder, this.srcCFGs, this.srcList);
+
+		/* Difference the function with the function it is mapped to. */
+		ClassifiedASTNode mapped = function.getMapping();
+		if(mapped != null && this.dstFunctions.contains(mapped) && !this.dstCFGs.containsKey(mapped)) {
+			CFG dstCFG = this.build(mapped, this.dstBuilder, this.dstCFGs, this.dstList);
+			CFGDifferencing.computeEdgeChanges(cfg, dstCFG);
+		}
+
+		return cfg;
+	}
+
+	/**
+	 * @param function The destination script or function.
+	 * @return The CFG of the function, or {@code null} if the node is not
+	 * 		   a destination function.
+	 */
+	public synchronized CFG getDst(ClassifiedASTNode function) {
+		CFG cfg = this.dstCFGs.get(function);
+		if(cfg != null || !this.dstFunctions.contains(function)) return cfg;
+		cfg = this.build(function, this.dstBuilder, this.dstCFGs, this.dstList);
+
+		/* Difference the function with the function it is mapped to. */
+		ClassifiedASTNode mapped = function.getMapping();
+		if(mapped != null && this.srcFunctions.contains(mapped) && !this.srcCFGs.containsKey(mapped)) {
+			CFG srcCFG = this.build(mapped, this.srcBuilder, this.srcCFGs, this.srcList);
+			CFGDifferencing.computeEdgeChanges(srcCFG, cfg);
+		}
+
+		return cfg;
+	}
+
+	/**
+	 * @return The number of CFGs that have been built (source and
+	 * 		   destination).
+	 */
+	public synchronized int getBuilt() {
+		return this.srcCFGs.size() + this.dstCFGs.size();
+	}
+
+	/**
+	 * @return The number of functions that have a CFG (source and
+	 * 		   destination).
+	 */
+	public int getTotal() {
+		return this.srcFunctions.size() + this.dstFunctions.size();
+	}
+
+	private CFG build(ClassifiedASTNode function, CFGBuilder builder, Map<ClassifiedASTNode, CFG> cfgs, List<CFG> list) {
+		CFG cfg = builder.build(function);
+		cfgs.put(function, cfg);
+		list.add(cfg);
+		return cfg;
+	}
+
+}
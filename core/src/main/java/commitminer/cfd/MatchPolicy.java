@@ -0,0 +1,144 @@
+package commitminer.cfd;
+
+import com.github.gumtreediff.matchers.MappingStore;
+import com.github.gumtreediff.matchers.Matcher;
+import com.github.gumtreediff.matchers.Matchers;
+import com.github.gumtreediff.matchers.heuristic.gt.GreedySubtreeMatcher;
+import com.github.gumtreediff.tree.ITree;
+
+import commitminer.diff.line.LineAnchoredMatcher;
+
+/**
+ * Decides how the source and destination ASTs of a file are matched.
+ *
+ * The default GumTree matcher (top-down, then bottom-up) gives the best
+ * matches, but its bottom-up phase grows much faster than the size of the
+ * trees and dominates the runtime of large (e.g., generated or bundled)
+ * files. Above configurable node counts, a cheaper strategy is used:
+ *  TOPDOWN: only the top-down phase, which matches identical subtrees.
+ *  LINES: nodes that start on the same unchanged line (by line diff) are
+ *  	matched. This is linear in the size of the files.
+ *
+ * A policy can also force one strategy for every file, so that the
+ * annotations produced with each strategy can be compared on the same
+ * history. The strategy used for each file is written to the output.
+ */
+public class MatchPolicy {
+
+	/** How the ASTs are matched. **/
+	public enum Strategy {
+		GUMTREE,
+		TOPDOWN,
+		LINES
+	}
+
+	/** The strategy for every file, or {@code null} to choose by size. **/
+	public Strategy strategy;
+
+	/** Files with more AST nodes are matched TOPDOWN (zero for no limit). **/
+	public int topDownNodes;
+
+	/** Files with more AST nodes are matched by LINES (zero for no limit). **/
+	public int lineNodes;
+
+	/** Pin the unchanged functions before matching (see
+	 * {@code FunctionPreMatcher}). **/
+	public boolean preMatch;
+
+	/**
+	 * Creates a policy that matches every file with GumTree.
+	 */
+	public MatchPolicy() {
+		this.strategy = null;
+		this.topDownNodes = 0;
+		this.lineNodes = 0;
+		this.preMatch = true;
+	}
+
+	/**
+	 * Chooses the strategy for a file. The size of a file is the number of
+	 * nodes in the larger of its two ASTs, not counting the pinned
+	 * functions.
+	 * @param src The source AST.
+	 * @param dst The destination AST.
+	 * @return The strategy to match the ASTs with.
+	 */
+	public Strategy choose(ITree src, ITree dst) {
+		if(this.strategy != null) return this.strategy;
+		int nodes = Math.max(src.getSize(), dst.getSize());
+		if(this.lineNodes > 0 && nodes > this.lineNodes) return Strategy.LINES;
+		if(this.topDownNodes > 0 && nodes > this.topDownNodes) return Strategy.TOPDOWN;
+		return Strategy.GUMTREE;
+	}
+
+	/**
+	 * Matches the source AST nodes to the destination AST nodes.
+	 * @param strategy The strategy from {@code choose}.
+	 * @param src The source AST.
+	 * @param dst The destination AST.
+	 * @param srcCode The source code of the source AST. If {@code null},
+	 * 		  LINES falls back to TOPDOWN.
+	 * @param dstCode The source code of the destination AST.
+	 * @return The matcher, which holds the node mappings.
+	 */
+	public static Matcher match(Strategy strategy, ITree src, ITree dst, String srcCode, String dstCode) {
+		Matcher matcher;
+		switch(strategy) {
+		case LINES:
+			if(srcCode != null && dstCode != null) {
+				matcher = new LineAnchoredMatcher(src, dst, new MappingStore(), srcCode, dstCode);
+				break;
+			}
+		case TOPDOWN:
+			matcher = new GreedySubtreeMatcher(src, dst, new MappingStore());
+			break;
+		default:
+			matcher = Matchers.getInstance().getMatcher(src, dst);
+		}
+		matcher.match();
+		return matcher;
+	}
+
+	/**
+	 * Reads a policy from the command line, e.g.,
+	 * {@code topdown=20000,lines=100000}, {@code strategy=TOPDOWN} or
+	 * {@code prematch=false}.
+	 * @param spec The thresholds (in AST nodes) or the forced strategy.
+	 * @return The policy.
+	 * @throws IllegalArgumentException when the policy cannot be read.
+	 */
+	public static MatchPolicy fromString(String spec) {
+		MatchPolicy policy = new MatchPolicy();
+		for(String setting : spec.split(",")) {
+			String[] keyValue = setting.trim().split("=");
+			if(keyValue.length != 2) throw new IllegalArgumentException("Expected key=value: " + setting);
+			String key = keyValue[0].trim();
+			String value = keyValue[1].trim();
+			switch(key) {
+			case "strategy":
+				policy.strategy = Strategy.valueOf(value);
+				break;
+			case "topdown":
+				policy.topDownNodes = Integer.parseInt(value);
+				break;
+			case "lines":
+				policy.lineNodes = Integer.parseInt(value);
+				break;
+			case "prematch":
+				policy.preMatch = Boolean.parseBoolean(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown match policy setting: " + key);
+			}
+		}
+		return policy;
+	}
+
+	@Override
+	public String toString() {
+		String s = this.strategy != null ? "strategy=" + this.strategy
+				: "topdown=" + this.topDownNodes + ",lines=" + this.lineNodes;
+		return s + ",prematch=" + this.preMatch;
+	}
+
+}
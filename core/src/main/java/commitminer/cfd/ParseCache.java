@@ -0,0 +1,202 @@
+package commitminer.cfd;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.gumtreediff.tree.TreeContext;
+
+import commitminer.cfg.CFGFactory;
+
+/**
+ * Keeps recently parsed ASTs, so that a version of a file is parsed once no
+ * matter how many commits it appears in.
+ *
+ * In a linear history, the version of a file after commit N is usually the
+ * version before commit N+1, so without the cache almost every version is
+ * parsed twice. Trees are keyed by the blob id of the file, the CFG factory
+ * and whether the AST was pre-processed.
+ *
+ * Control flow differencing classifies the AST nodes in place (see
+ * {@code ASTClassifier}) and builds CFGs on them, so the cached trees are
+ * never handed out. Each lookup returns a fresh, unclassified copy made by
+ * the CFG factory ({@code CFGFactory.copyGumTree}). Trees from factories
+ * that cannot copy trees are not cached.
+ *
+ * The cache is bounded by an estimate of the heap used by the cached trees,
+ * which is proportional to the length of their source code.
+ */
+public class ParseCache {
+
+	/** The default capacity (in bytes). **/
+	public static final long DEFAULT_CAPACITY = 256 * 1024 * 1024;
+
+	/** The estimated heap footprint of a parsed tree per character of source
+	 * code (Rhino AST nodes, GumTree nodes and their labels). **/
+	public static final long BYTES_PER_CHARACTER = 64;
+
+	/** The cached trees in access order (least recently used first). **/
+	private LinkedHashMap<String, Entry> cache;
+
+	/** The maximum estimated footprint of the cached trees (in bytes). **/
+	private long capacity;
+
+	/** The estimated footprint of the cached trees (in bytes). **/
+	private long size;
+
+	/** The number of trees that were copied from the cache. **/
+	private long hits;
+
+	/** The number of trees that were parsed. **/
+	private long misses;
+
+	/** The number of trees that were dropped to make room for others. **/
+	private long evictions;
+
+	/**
+	 * @param capacity The maximum estimated heap footprint of the cached
+	 * 		  trees (in bytes).
+	 */
+	public ParseCache(long capacity) {
+		this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		this.capacity = capacity;
+		this.size = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	/**
+	 * Looks up the tree for a version of a file, or parses the file if its
+	 * tree is not in the cache.
+	 * @param cfgFactory The factory that parses the file.
+	 * @param blobID The id of the blob that holds the source code. If
+	 * 		  {@code null}, the file is parsed and not cached.
+	 * @param source The source code of the file.
+	 * @param path The path of the file (for its extension).
+	 * @param preProcess Set to true to perform pre-processing on the AST.
+	 * @return A tree that the caller may classify and modify, or {@code null}
+	 * 		   if the file type is not supported.
+	 * @throws IOException When something goes wrong parsing the source file.
+	 */
+	public TreeContext get(CFGFactory cfgFactory, String blobID, String source,
+						   String path, boolean preProcess) throws IOException {
+
+		if(blobID == null)
+			return ControlFlowDifferencing.createGumTree(cfgFactory, source, path, preProcess);
+
+		String key = getKey(cfgFactory, blobID, preProcess);
+
+		/* Copy outside the lock. Cached trees are only read, so several
+		 * threads may copy the same tree at once. */
+		Entry entry;
+		synchronized(this.cache) {
+			entry = this.cache.get(key);
+			if(entry != null) this.hits++;
+			else this.misses++;
+		}
+		if(entry != null) return cfgFactory.copyGumTree(entry.tree);
+
+		TreeContext tree = ControlFlowDifferencing.createGumTree(cfgFactory, source, path, preProcess);
+		if(tree == null) return null;
+
+		/* Keep the parsed tree and hand out a copy of it. */
+		TreeContext copy = cfgFactory.copyGumTree(tree);
+		if(copy == null) return tree;
+		this.put(key, new Entry(tree, source.length() * BYTES_PER_CHARACTER));
+		return copy;
+
+	}
+
+	/**
+	 * Adds a tree to the cache and evicts the least recently used trees
+	 * until the cache fits within its capacity.
+	 */
+	private void put(String key, Entry entry) {
+
+		if(entry.footprint > this.capacity) return;
+
+		synchronized(this.cache) {
+
+			Entry old = this.cache.put(key, entry);
+			if(old != null) this.size -= old.footprint;
+			this.size += entry.footprint;
+
+			Iterator<Map.Entry<String, Entry>> it = this.cache.entrySet().iterator();
+			while(this.size > this.capacity && it.hasNext()) {
+				Map.Entry<String, Entry> eldest = it.next();
+				this.size -= eldest.getValue().footprint;
+				this.evictions++;
+				it.remove();
+			}
+
+		}
+
+	}
+
+	/**
+	 * @return The number of trees that were copied from the cache.
+	 */
+	public long getHits() {
+		synchronized(this.cache) {
+			return this.hits;
+		}
+	}
+
+	/**
+	 * @return The number of trees that were parsed.
+	 */
+	public long getMisses() {
+		synchronized(this.cache) {
+			return this.misses;
+		}
+	}
+
+	/**
+	 * @return A summary of the cache counters for logging.
+	 */
+	public String getStatistics() {
+		synchronized(this.cache) {
+			long lookups = this.hits + this.misses;
+			return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d trees (~%.1f MB of %.1f MB)",
+					this.hits, this.misses,
+					lookups == 0 ? 0.0 : 100.0 * this.hits / lookups,
+					this.evictions, this.cache.size(),
+					this.size / 1048576.0, this.capacity / 1048576.0);
+		}
+	}
+
+	/**
+	 * Drops all the cached trees.
+	 */
+	public void clear() {
+		synchronized(this.cache) {
+			this.cache.clear();
+			this.size = 0;
+		}
+	}
+
+	/**
+	 * @return The key for a version of a file and a parser configuration.
+	 */
+	private static String getKey(CFGFactory cfgFactory, String blobID, boolean preProcess) {
+		return blobID + " " + cfgFactory.getClass().getName() + (preProcess ? " -pp" : "");
+	}
+
+	/**
+	 * A cached tree and its estimated heap footprint.
+	 */
+	private static class Entry {
+
+		TreeContext tree;
+		long footprint;
+
+		Entry(TreeContext tree, long footprint) {
+			this.tree = tree;
+			this.footprint = footprint;
+		}
+
+	}
+
+}
@@ -1,5 +1,6 @@
 package commitminer.cfg;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -82,6 +83,71 @@ public class CFG {
 
 	}
 
+	/**
+	 * Clears the abstract states that a flow analysis stored on the nodes and
+	 * edges of the CFG. Call this before running a new flow analysis on a
+	 * CFG that has already been analyzed, since the flow analysis joins with
+	 * any states it finds.
+	 */
+	public void clearStates() {
+
+		Set<CFGNode> visited = new HashSet<CFGNode>();
+		Stack<CFGNode> stack = new Stack<CFGNode>();
+
+		stack.push(this.getEntryNode());
+		visited.add(this.getEntryNode());
+
+		while(!stack.isEmpty()) {
+			CFGNode node = stack.pop();
+			node.setBeforeState(null);
+			node.setAfterState(null);
+
+			for(CFGEdge edge : node.getEdges()) {
+				edge.setBeforeState(null);
+				edge.setAfterState(null);
+				if(!visited.contains(edge.getTo())) {
+					stack.push(edge.getTo());
+					visited.add(edge.getTo());
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Adds an offset to the IDs of a set of nodes, and of the nodes and edges
+	 * reachable from them. CFGs that are built concurrently number their
+	 * nodes and edges from zero, then are shifted into the ID range they
+	 * would have had if they were built one after another. The entry node
+	 * alone is not enough, since unreachable nodes (e.g., dead code after a
+	 * return) also carry IDs.
+	 * @param nodes The nodes to start from.
+	 * @param offset The amount to add to each ID.
+	 */
+	public static void shiftIDs(Collection<CFGNode> nodes, int offset) {
+
+		Set<CFGNode> visited = new HashSet<CFGNode>();
+		Stack<CFGNode> stack = new Stack<CFGNode>();
+
+		for(CFGNode node : nodes) {
+			if(visited.add(node)) stack.push(node);
+		}
+
+		while(!stack.isEmpty()) {
+			CFGNode node = stack.pop();
+			node.setId(node.getId() + offset);
+
+			for(CFGEdge edge : node.getEdges()) {
+				edge.setId(edge.getId() + offset);
+				if(!visited.contains(edge.getTo())) {
+					stack.push(edge.getTo());
+					visited.add(edge.getTo());
+				}
+			}
+		}
+
+	}
+
 	/**
 	 * @return a copy of the CFG.
 	 */
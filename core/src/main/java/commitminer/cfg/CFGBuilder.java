@@ -0,0 +1,35 @@
+package commitminer.cfg;
+
+import java.util.List;
+
+import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode;
+
+/**
+ * Builds the CFGs of one class or script one function at a time, so that
+ * the CFGs of functions that are never analyzed are never built.
+ *
+ * A builder builds the same CFGs as {@code CFGFactory.createCFGs}, and
+ * node ids are unique across all the CFGs it builds.
+ */
+public interface CFGBuilder {
+
+	/**
+	 * @return The class or script and each of its functions.
+	 */
+	List<ClassifiedASTNode> getFunctions();
+
+	/**
+	 * @return The class or script and the functions that contain changed
+	 * 		   (inserted, removed, updated or moved) AST nodes. The AST must
+	 * 		   have been classified.
+	 */
+	List<ClassifiedASTNode> getChangedFunctions();
+
+	/**
+	 * Builds the CFG for the class or script or one of its functions.
+	 * @param function An element of {@code getFunctions}.
+	 * @return The CFG.
+	 */
+	CFG build(ClassifiedASTNode function);
+
+}
@@ -150,6 +150,13 @@ public class CFGEdge {
 		return id;
 	}
 
+	/**
+	 * @param id The unique ID for the edge.
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+
 //	@Override
 //	public boolean equals(Object o) {
 //		if(o instanceof CFGEdge) {
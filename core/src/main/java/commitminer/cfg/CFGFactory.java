@@ -4,8 +4,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
 
 import com.github.gumtreediff.gen.TreeGenerator;
+import com.github.gumtreediff.tree.TreeContext;
 
 import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode;
 
@@ -25,12 +27,47 @@ public interface CFGFactory {
 	 */
 	List<CFG> createCFGs(ClassifiedASTNode root);
 
+	/**
+	 * Builds the same CFGs as {@code createCFGs}, with the CFG of each
+	 * function built as a separate task on the pool. The node and edge IDs
+	 * are the same as when the CFGs are built sequentially.
+	 * @param root The class or script to build CFGs for.
+	 * @param pool Builds the function CFGs.
+	 * @return One CFG for each function in the class or script.
+	 */
+	default List<CFG> createCFGs(ClassifiedASTNode root, ForkJoinPool pool) {
+		return this.createCFGs(root);
+	}
+
+	/**
+	 * Creates a builder that builds the same CFGs as {@code createCFGs}, one
+	 * function at a time.
+	 * @param root The class or script to build CFGs for.
+	 * @return The builder, or {@code null} if the factory can only build all
+	 * 		   the CFGs at once.
+	 */
+	default CFGBuilder newCFGBuilder(ClassifiedASTNode root) {
+		return null;
+	}
+
 	/**
 	 * @param The file extension of the file that needs to be parsed.
 	 * @return The GumTree Tree generator (AST parser) for the file extension.
 	 */
 	TreeGenerator getTreeGenerator(String extension);
 
+	/**
+	 * Copies a tree built by this factory's {@code TreeGenerator}, so that a
+	 * cached tree can be classified and converted to CFGs without changing
+	 * the cached tree.
+	 * @param tree The tree to copy. It must not have been classified.
+	 * @return A deep copy of the tree and its AST, or {@code null} if the
+	 * 		   factory cannot copy trees.
+	 */
+	default TreeContext copyGumTree(TreeContext tree) {
+		return null;
+	}
+
 	/**
 	 * @param extension The source code file extension.
 	 * @return true if the CFGFactory accepts the type of source code file
@@ -231,6 +231,13 @@ public class CFGNode {
 		return id;
 	}
 
+	/**
+	 * @param id The unique ID for this node.
+	 */
+	public void setId(int id) {
+		this.id = id;
+	}
+
 	/**
 	 * @return the corresponding node in the source or destination CFG.
 	 */
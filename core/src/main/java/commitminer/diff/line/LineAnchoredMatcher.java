@@ -0,0 +1,131 @@
+package commitminer.diff.line;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.github.gumtreediff.matchers.MappingStore;
+import com.github.gumtreediff.matchers.Matcher;
+import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.TreeUtils;
+
+/**
+ * Matches AST nodes using a line diff instead of the tree structure.
+ *
+ * The unchanged lines of the two files are found with Meyers diff. A source
+ * node is matched to the destination node of the same type that starts at
+ * the same column of the same (unchanged) line. Nodes that start on a
+ * changed line are not matched, so they are classified as inserted or
+ * deleted. This is much less precise than GumTree (e.g., moves are not
+ * detected), but it is linear in the size of the files.
+ */
+public class LineAnchoredMatcher extends Matcher {
+
+	private String srcCode;
+	private String dstCode;
+
+	public LineAnchoredMatcher(ITree src, ITree dst, MappingStore store,
+							   String srcCode, String dstCode) {
+		super(src, dst, store);
+		this.srcCode = srcCode;
+		this.dstCode = dstCode;
+	}
+
+	@Override
+	public void match() {
+
+		int[] srcLineStarts = getLineStarts(this.srcCode);
+		int[] dstLineStarts = getLineStarts(this.dstCode);
+		int[] lineMap = this.getLineMap(srcLineStarts.length);
+
+		/* The destination nodes by their line, column and type. Nodes with
+		 * the same key (e.g., nested property gets) are kept in pre-order. */
+		Map<String, LinkedList<ITree>> dstNodes = new HashMap<String, LinkedList<ITree>>();
+		for(ITree node : TreeUtils.preOrder(this.dst)) {
+			if(node == this.dst) continue;
+			int line = getLine(dstLineStarts, node.getPos());
+			String key = getKey(line, node.getPos() - dstLineStarts[line], node.getType());
+			LinkedList<ITree> nodes = dstNodes.get(key);
+			if(nodes == null) {
+				nodes = new LinkedList<ITree>();
+				dstNodes.put(key, nodes);
+			}
+			nodes.add(node);
+		}
+
+		/* The scripts always match. */
+		this.addMapping(this.src, this.dst);
+
+		for(ITree node : TreeUtils.preOrder(this.src)) {
+			if(node == this.src) continue;
+			int line = getLine(srcLineStarts, node.getPos());
+			if(lineMap[line] < 0) continue;
+			String key = getKey(lineMap[line], node.getPos() - srcLineStarts[line], node.getType());
+			LinkedList<ITree> nodes = dstNodes.get(key);
+			if(nodes != null && !nodes.isEmpty()) this.addMapping(node, nodes.removeFirst());
+		}
+
+	}
+
+	/**
+	 * @return The destination line of each unchanged source line, or -1 for
+	 * 		   source lines that were changed.
+	 */
+	private int[] getLineMap(int srcLines) {
+
+		int[] lineMap = new int[srcLines];
+		Arrays.fill(lineMap, -1);
+
+		int i = 0;
+		int j = 0;
+		DiffMatchPatch dmp = new DiffMatchPatch();
+		for(DiffMatchPatch.Diff diff : dmp.diff_main_line_mode(this.srcCode, this.dstCode)) {
+			/* In line mode, each character of a diff is a line. */
+			for(int y = 0; y < diff.text.length(); y++) {
+				switch(diff.operation) {
+				case EQUAL:
+					if(i < srcLines) lineMap[i] = j;
+					i++;
+					j++;
+					break;
+				case DELETE:
+					i++;
+					break;
+				case INSERT:
+					j++;
+					break;
+				}
+			}
+		}
+
+		return lineMap;
+
+	}
+
+	/**
+	 * @return The offset of the first character of each line.
+	 */
+	private static int[] getLineStarts(String code) {
+		int lines = 1;
+		for(int i = 0; i < code.length(); i++) if(code.charAt(i) == '\n') lines++;
+		int[] starts = new int[lines];
+		int line = 1;
+		for(int i = 0; i < code.length(); i++) if(code.charAt(i) == '\n') starts[line++] = i + 1;
+		return starts;
+	}
+
+	/**
+	 * @return The line that contains an offset. Nodes with no position
+	 * 		   are put on the first line.
+	 */
+	private static int getLine(int[] lineStarts, int pos) {
+		int line = Arrays.binarySearch(lineStarts, pos);
+		return line >= 0 ? line : Math.max(0, -line - 2);
+	}
+
+	private static String getKey(int line, int column, int type) {
+		return line + ":" + column + ":" + type;
+	}
+
+}
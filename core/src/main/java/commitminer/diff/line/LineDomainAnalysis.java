@@ -7,6 +7,7 @@ import java.util.Map;
 import org.deri.iris.api.basics.IPredicate;
 import org.deri.iris.storage.IRelation;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.DomainAnalysis;
 import commitminer.analysis.SourceCodeFileChange;
 import commitminer.analysis.annotation.Annotation;
@@ -26,10 +27,11 @@ public class LineDomainAnalysis extends DomainAnalysis {
 
 	@Override
 	protected void analyzeFile(SourceCodeFileChange sourceCodeFileChange,
-							   Map<IPredicate, IRelation> facts) throws Exception {
+							   Map<IPredicate, IRelation> facts,
+							   AnalysisContext context) throws Exception {
 		
 		/* Get the annotation database. */
-		AnnotationFactBase factBase = AnnotationFactBase.getInstance(sourceCodeFileChange);
+		AnnotationFactBase factBase = context.getAnnotationFactBase(sourceCodeFileChange);
 		
 		String[] srcLines = sourceCodeFileChange.buggyCode.split("\n");
 		String[] dstLines = sourceCodeFileChange.repairedCode.split("\n");
@@ -0,0 +1,225 @@
+package commitminer.git;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Reads the contents of blobs (files) from a repository by their object id.
+ *
+ * Each thread that reads from the store gets its own long-lived
+ * {@code ObjectReader}, so that readers (and the pack windows they hold) are
+ * not re-allocated for every file. Recently read blobs are kept in a bounded
+ * LRU cache keyed by their object id. Because consecutive commits usually
+ * share most of their files, the version of a file after commit N is often
+ * read again as the version of the file before commit N+1.
+ */
+public class BlobStore {
+
+	/** The default cache size (in characters). **/
+	public static final long DEFAULT_CACHE_SIZE = 32 * 1024 * 1024;
+
+	/** The repository to read blobs from. **/
+	private Repository repository;
+
+	/** The reader for each thread that uses the store. **/
+	private volatile ThreadLocal<ObjectReader> reader;
+
+	/** All the readers that have been created, so they can be released. **/
+	private List<ObjectReader> readers;
+
+	/** The cached blobs in access order (least recently used first). **/
+	private LinkedHashMap<ObjectId, String> cache;
+
+	/** The maximum number of characters to keep in the cache. **/
+	private long cacheCapacity;
+
+	/** The number of characters currently in the cache. **/
+	private long cacheSize;
+
+	/** The number of blobs that were found in the cache. **/
+	private long hits;
+
+	/** The number of blobs that were read from the repository. **/
+	private long misses;
+
+	/** The number of bytes that were read from the repository. **/
+	private long bytesRead;
+
+	/** The time spent reading blobs from the repository (in nanoseconds). **/
+	private long readTime;
+
+	/**
+	 * @param repository The repository to read blobs from.
+	 * @param cacheCapacity The maximum number of characters to keep in the
+	 * 		  cache. Use zero to disable the cache.
+	 */
+	public BlobStore(Repository repository, long cacheCapacity) {
+		this.repository = repository;
+		this.reader = new ThreadLocal<ObjectReader>();
+		this.readers = new LinkedList<ObjectReader>();
+		this.cache = new LinkedHashMap<ObjectId, String>(16, 0.75f, true);
+		this.cacheCapacity = cacheCapacity;
+		this.cacheSize = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.bytesRead = 0;
+		this.readTime = 0;
+	}
+
+	/**
+	 * @return The {@code ObjectReader} for the current thread. The reader is
+	 * 		   released when the store is closed, so callers must not release
+	 * 		   it.
+	 */
+	public ObjectReader getReader() {
+		ObjectReader reader = this.reader.get();
+		if(reader == null) {
+			reader = this.repository.newObjectReader();
+			this.reader.set(reader);
+			synchronized(this.readers) {
+				this.readers.add(reader);
+			}
+		}
+		return reader;
+	}
+
+	/**
+	 * Reads the contents of a blob.
+	 * @param id The object id of the blob. A {@code null} or zero id (i.e.,
+	 * 		  the file does not exist on this side of a diff) is read as an
+	 * 		  empty file.
+	 * @return The contents of the blob as UTF-8 text.
+	 * @throws IOException when the blob cannot be read.
+	 */
+	public String getBlob(ObjectId id) throws IOException {
+
+		if(id == null || ObjectId.zeroId().equals(id)) return "";
+
+		synchronized(this.cache) {
+			String contents = this.cache.get(id);
+			if(contents != null) {
+				this.hits++;
+				return contents;
+			}
+			this.misses++;
+		}
+
+		long start = System.nanoTime();
+		byte[] data = this.getReader().open(id, Constants.OBJ_BLOB).getBytes();
+		long time = System.nanoTime() - start;
+		String contents = new String(data, "utf-8");
+
+		synchronized(this.cache) {
+			this.bytesRead += data.length;
+			this.readTime += time;
+		}
+
+		this.put(id.copy(), contents);
+
+		return contents;
+
+	}
+
+	/**
+	 * Adds a blob to the cache and evicts the least recently used blobs
+	 * until the cache fits within its capacity.
+	 */
+	private void put(ObjectId id, String contents) {
+
+		if(contents.length() > this.cacheCapacity) return;
+
+		synchronized(this.cache) {
+
+			String old = this.cache.put(id, contents);
+			if(old != null) this.cacheSize -= old.length();
+			this.cacheSize += contents.length();
+
+			Iterator<Map.Entry<ObjectId, String>> it = this.cache.entrySet().iterator();
+			while(this.cacheSize > this.cacheCapacity && it.hasNext()) {
+				Map.Entry<ObjectId, String> eldest = it.next();
+				this.cacheSize -= eldest.getValue().length();
+				it.remove();
+			}
+
+		}
+
+	}
+
+	/**
+	 * @return The number of blobs that were found in the cache.
+	 */
+	public long getHits() {
+		synchronized(this.cache) {
+			return this.hits;
+		}
+	}
+
+	/**
+	 * @return The number of blobs that were read from the repository.
+	 */
+	public long getMisses() {
+		synchronized(this.cache) {
+			return this.misses;
+		}
+	}
+
+	/**
+	 * @return The number of bytes that were read from the repository.
+	 */
+	public long getBytesRead() {
+		synchronized(this.cache) {
+			return this.bytesRead;
+		}
+	}
+
+	/**
+	 * @return The time spent reading blobs from the repository (in
+	 * 		   nanoseconds). This includes the time JGit spends in its window
+	 * 		   and delta base caches, so it shows how well those caches fit
+	 * 		   the repository.
+	 */
+	public long getReadTime() {
+		synchronized(this.cache) {
+			return this.readTime;
+		}
+	}
+
+	/**
+	 * @return A summary of the cache counters for logging.
+	 */
+	public String getStatistics() {
+		synchronized(this.cache) {
+			long lookups = this.hits + this.misses;
+			return String.format("%d hits, %d misses (%.1f%% hit rate), read %.1f MB in %.2fs (%.1f MB/s)",
+					this.hits, this.misses,
+					lookups == 0 ? 0.0 : 100.0 * this.hits / lookups,
+					this.bytesRead / 1048576.0, this.readTime / 1e9,
+					this.readTime == 0 ? 0.0 : (this.bytesRead / 1048576.0) / (this.readTime / 1e9));
+		}
+	}
+
+	/**
+	 * Releases the readers and drops the cache.
+	 */
+	public void close() {
+		synchronized(this.readers) {
+			for(ObjectReader reader : this.readers) reader.release();
+			this.readers.clear();
+			this.reader = new ThreadLocal<ObjectReader>();
+		}
+		synchronized(this.cache) {
+			this.cache.clear();
+			this.cacheSize = 0;
+		}
+	}
+
+}
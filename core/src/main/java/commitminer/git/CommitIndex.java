@@ -0,0 +1,377 @@
+package commitminer.git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import commitminer.analysis.Commit.Type;
+
+/**
+ * A compact, persistent index of the commit metadata of a repository: the
+ * id, parents, author, date and commit message type of every commit
+ * reachable from HEAD.
+ *
+ * Walking the history with a {@code RevWalk} parses every commit object
+ * (including its message). The index stores only what our tools need, so
+ * history metrics and commit pairs can be read with a sequential scan of a
+ * small file. The index is stored in the repository's .git directory. When
+ * HEAD moves forward (e.g., after a pull), only the new commits are walked.
+ * If HEAD was rewritten, the index is rebuilt.
+ *
+ * Commits are stored in the order of a {@code RevWalk} from HEAD (most
+ * recent first). After an incremental update, the new and old commits are
+ * put back in that order, so an updated index is the same as a rebuilt one.
+ */
+public class CommitIndex {
+
+	/** The name of the index file in the project's .git directory. **/
+	public static final String FILE_NAME = "commitminer-index";
+
+	/** Identifies the file format. **/
+	private static final int MAGIC = 0x434d4958; // "CMIX"
+
+	/** Incremented when the file format changes. **/
+	private static final int VERSION = 2;
+
+	/** The commit at HEAD when the index was built. **/
+	private ObjectId head;
+
+	/** The author emails. Entries refer to authors by their position. **/
+	private List<String> authors;
+
+	/** The commits, most recent first. **/
+	private List<Entry> entries;
+
+	private CommitIndex() {
+		this.authors = new ArrayList<String>();
+		this.entries = new ArrayList<Entry>();
+	}
+
+	/**
+	 * @return The commits, most recent first.
+	 */
+	public List<Entry> getEntries() {
+		return this.entries;
+	}
+
+	/**
+	 * Orders the commits by first-parent chains. Starting from the most
+	 * recent commit that has not been visited, the chain of first parents is
+	 * followed until it reaches a visited commit. Consecutive commits in a
+	 * chain share a tree, so their files are read from the same part of the
+	 * pack file.
+	 * @return The commits in locality order.
+	 */
+	public List<Entry> getLocalityOrder() {
+
+		Map<ObjectId, Entry> byID = new HashMap<ObjectId, Entry>();
+		for(Entry entry : this.entries) byID.put(entry.id, entry);
+
+		Set<ObjectId> visited = new HashSet<ObjectId>();
+		List<Entry> order = new ArrayList<Entry>(this.entries.size());
+
+		for(Entry start : this.entries) {
+			Entry entry = start;
+			while(entry != null && visited.add(entry.id)) {
+				order.add(entry);
+				entry = entry.parents.length > 0 ? byID.get(entry.parents[0]) : null;
+			}
+		}
+
+		return order;
+
+	}
+
+	/**
+	 * @return The author emails. An entry's author is a position in this
+	 * 		   list.
+	 */
+	public List<String> getAuthors() {
+		return this.authors;
+	}
+
+	/**
+	 * Loads the index of a repository, and brings it up to date with HEAD if
+	 * HEAD has moved since the index was written.
+	 * @param repository The repository to index.
+	 * @return The index for HEAD.
+	 * @throws IOException when the repository cannot be read or the index
+	 * 		   cannot be written.
+	 */
+	public static CommitIndex open(Repository repository) throws IOException {
+
+		Path path = repository.getDirectory().toPath().resolve(FILE_NAME);
+
+		CommitIndex index = null;
+		if(Files.exists(path)) {
+			try {
+				index = read(path);
+			} catch (IOException e) {
+				/* A damaged or outdated index is rebuilt. */
+				index = null;
+			}
+		}
+
+		ObjectId head = repository.resolve(Constants.HEAD);
+		if(index != null && head != null && head.equals(index.head)) return index;
+		if(index != null && head == null && index.head == null) return index;
+
+		index = update(repository, index, head);
+		write(index, path);
+		return index;
+
+	}
+
+	/**
+	 * Adds the commits between the indexed HEAD and the current HEAD, or
+	 * rebuilds the index if the indexed HEAD is no longer in the history.
+	 */
+	private static CommitIndex update(Repository repository, CommitIndex old, ObjectId head) throws IOException {
+
+		CommitIndex index = new CommitIndex();
+		index.head = head;
+		if(head == null) return index;
+
+		Map<String, Integer> authorIDs = new HashMap<String, Integer>();
+
+		RevWalk walk = new RevWalk(repository);
+		try {
+			RevCommit headCommit = walk.parseCommit(head);
+			walk.markStart(headCommit);
+
+			/* Only walk the new commits if the old HEAD is an ancestor. */
+			boolean incremental = false;
+			if(old != null && old.head != null && repository.hasObject(old.head)) {
+				RevCommit oldHead = walk.parseCommit(old.head);
+				if(walk.isMergedInto(oldHead, headCommit)) {
+					incremental = true;
+					walk.reset();
+					walk.markStart(headCommit);
+					walk.markUninteresting(oldHead);
+					for(String author : old.authors) {
+						authorIDs.put(author, index.authors.size());
+						index.authors.add(author);
+					}
+				}
+				else {
+					walk.reset();
+					walk.markStart(headCommit);
+				}
+			}
+
+			for(RevCommit commit : walk) {
+				Entry entry = new Entry();
+				entry.id = commit.copy();
+				entry.parents = new ObjectId[commit.getParentCount()];
+				for(int i = 0; i < entry.parents.length; i++) entry.parents[i] = commit.getParent(i).copy();
+
+				PersonIdent author = commit.getAuthorIdent();
+				Integer authorID = authorIDs.get(author.getEmailAddress());
+				if(authorID == null) {
+					authorID = index.authors.size();
+					authorIDs.put(author.getEmailAddress(), authorID);
+					index.authors.add(author.getEmailAddress());
+				}
+				entry.author = authorID;
+				entry.time = author.getWhen().getTime();
+				entry.commitTime = commit.getCommitTime();
+				entry.type = CommitPairSource.getCommitMessageType(commit.getFullMessage());
+
+				index.entries.add(entry);
+				commit.disposeBody();
+			}
+
+			/* A new commit can be older than an old commit (e.g., a merged
+			 * branch), so the old commits do not simply follow the new ones. */
+			if(incremental) {
+				index.entries.addAll(old.entries);
+				index.entries = sortByWalk(index.entries, head);
+			}
+		}
+		finally {
+			walk.release();
+		}
+
+		return index;
+
+	}
+
+	/**
+	 * Orders the commits as a {@code RevWalk} from HEAD visits them. The
+	 * walk visits the pending commit with the most recent commit time next
+	 * (the first one queued if several have the same time), and queues the
+	 * parents of each commit it visits.
+	 * @param entries The commits reachable from HEAD, in any order.
+	 * @param head The commit to start from.
+	 * @return The commits in walk order.
+	 */
+	private static List<Entry> sortByWalk(List<Entry> entries, ObjectId head) {
+
+		Map<ObjectId, Entry> byID = new HashMap<ObjectId, Entry>();
+		for(Entry entry : entries) byID.put(entry.id, entry);
+
+		final Map<Entry, Long> queued = new HashMap<Entry, Long>();
+		PriorityQueue<Entry> pending = new PriorityQueue<Entry>(Math.max(1, entries.size()), new Comparator<Entry>() {
+			@Override
+			public int compare(Entry a, Entry b) {
+				if(a.commitTime != b.commitTime) return a.commitTime > b.commitTime ? -1 : 1;
+				return queued.get(a).compareTo(queued.get(b));
+			}
+		});
+
+		List<Entry> order = new ArrayList<Entry>(entries.size());
+
+		Entry start = byID.get(head);
+		if(start == null) return entries;
+		queued.put(start, 0L);
+		pending.add(start);
+
+		while(!pending.isEmpty()) {
+			Entry entry = pending.poll();
+			order.add(entry);
+			for(ObjectId parentID : entry.parents) {
+				Entry parent = byID.get(parentID);
+				if(parent == null || queued.containsKey(parent)) continue;
+				queued.put(parent, (long)queued.size());
+				pending.add(parent);
+			}
+		}
+
+		return order;
+
+	}
+
+	/**
+	 * Reads an index file.
+	 */
+	private static CommitIndex read(Path path) throws IOException {
+
+		CommitIndex index = new CommitIndex();
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("Unknown commit index format.");
+
+			index.head = in.readBoolean() ? readId(in) : null;
+
+			int authors = in.readInt();
+			for(int i = 0; i < authors; i++) index.authors.add(in.readUTF());
+
+			int entries = in.readInt();
+			Type[] types = Type.values();
+			for(int i = 0; i < entries; i++) {
+				Entry entry = new Entry();
+				entry.id = readId(in);
+				entry.author = in.readInt();
+				entry.time = in.readLong();
+				entry.commitTime = in.readInt();
+				entry.type = types[in.readByte()];
+				int parents = in.readInt();
+				if(parents < 0) throw new IOException("Damaged commit index.");
+				entry.parents = new ObjectId[parents];
+				for(int j = 0; j < entry.parents.length; j++) entry.parents[j] = readId(in);
+				index.entries.add(entry);
+			}
+
+		}
+
+		return index;
+
+	}
+
+	/**
+	 * Writes an index file. The index is written to a temporary file and
+	 * moved into place, so a reader never sees a partial index.
+	 */
+	private static void write(CommitIndex index, Path path) throws IOException {
+
+		Path tmp = Files.createTempFile(path.getParent(), FILE_NAME, ".tmp");
+
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			out.writeBoolean(index.head != null);
+			if(index.head != null) writeId(out, index.head);
+
+			out.writeInt(index.authors.size());
+			for(String author : index.authors) out.writeUTF(author);
+
+			out.writeInt(index.entries.size());
+			for(Entry entry : index.entries) {
+				writeId(out, entry.id);
+				out.writeInt(entry.author);
+				out.writeLong(entry.time);
+				out.writeInt(entry.commitTime);
+				out.writeByte(entry.type.ordinal());
+				out.writeInt(entry.parents.length);
+				for(ObjectId parent : entry.parents) writeId(out, parent);
+			}
+
+		}
+
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+	}
+
+	private static ObjectId readId(DataInputStream in) throws IOException {
+		byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+		in.readFully(raw);
+		return ObjectId.fromRaw(raw);
+	}
+
+	private static void writeId(DataOutputStream out, ObjectId id) throws IOException {
+		byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+		id.copyRawTo(raw, 0);
+		out.write(raw);
+	}
+
+	/**
+	 * The metadata of one commit.
+	 */
+	public static class Entry {
+
+		/** The commit id. **/
+		public ObjectId id;
+
+		/** The ids of the parent commits. **/
+		public ObjectId[] parents;
+
+		/** The author (a position in the index's author list). **/
+		public int author;
+
+		/** The author date (in milliseconds since the epoch). **/
+		public long time;
+
+		/** The commit time (in seconds since the epoch), which orders the
+		 * walk. **/
+		public int commitTime;
+
+		/** The type inferred from the commit message. **/
+		public Type type;
+
+	}
+
+}
@@ -0,0 +1,335 @@
+package commitminer.git;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import commitminer.analysis.Commit.Type;
+
+/**
+ * Lazily walks the history of a repository and produces revision identifier
+ * pairs (parent, commit, commit message type) as they are discovered.
+ *
+ * Commits are visited from the most recent commit back in time (the same
+ * order as {@code git log}). Because pairs are produced on demand, analysis
+ * can start as soon as the first pair is found, and the history does not
+ * need to be held in memory as a list of pairs. The walk stops early when
+ * the limit is reached or when the source is closed.
+ *
+ * The project metrics (number of commits, number of authors and the first
+ * and last commit dates) are computed as a side effect of the walk. They
+ * cover the whole history once {@code hasNext} returns {@code false}.
+ *
+ * The history can also be read from a {@code CommitIndex}, in which case no
+ * commit objects are parsed.
+ *
+ * In locality order, a commit is followed by its first parent where
+ * possible, so consecutive pairs share a tree (the buggy tree of one pair
+ * is the repaired tree of the next). This keeps the blobs that are read
+ * for consecutive pairs close together in the blob cache and in JGit's
+ * pack caches.
+ */
+public class CommitPairSource implements Iterator<Triple<String, String, Type>> {
+
+	/** Merge commit pattern. **/
+	private static final Pattern MERGE_PATTERN = Pattern.compile("merge", Pattern.CASE_INSENSITIVE);
+
+	/** Bug fixing commit pattern. **/
+	private static final Pattern BUG_FIX_PATTERN = Pattern.compile("(fix|bug|repair)", Pattern.CASE_INSENSITIVE);
+
+	/** Walks the history. Null once the walk is finished. **/
+	private RevWalk walk;
+
+	/** Reads the history from an index instead of walking it. Null once the
+	 * index is finished or if the history is walked. **/
+	private Iterator<CommitIndex.Entry> indexEntries;
+
+	/** The author emails of the index. **/
+	private List<String> indexAuthors;
+
+	/** The maximum number of pairs to produce (zero for no limit). **/
+	private int limit;
+
+	/** The number of pairs produced so far. **/
+	private int produced;
+
+	/** The next pair, or null if it has not been found yet. **/
+	private Triple<String, String, Type> next;
+
+	/** The number of commits visited. **/
+	private int commitCount;
+
+	/** The commit authors (uniquely identified by their emails). **/
+	private Set<String> authorsEmails;
+
+	/** The date of the most recent commit. **/
+	private Date lastCommitDate;
+
+	/** The date of the oldest commit visited so far. **/
+	private Date firstCommitDate;
+
+	/** True if commits are not visited in history order. **/
+	private boolean locality;
+
+	/** True if only some of the commits are visited. **/
+	private boolean filtered;
+
+	/**
+	 * @param repository The repository to walk, starting at HEAD.
+	 * @param limit The maximum number of pairs to produce (zero for no limit).
+	 * @throws IOException when HEAD cannot be read.
+	 */
+	public CommitPairSource(Repository repository, int limit) throws IOException {
+		this(repository, limit, false);
+	}
+
+	/**
+	 * @param repository The repository to walk, starting at HEAD.
+	 * @param limit The maximum number of pairs to produce (zero for no limit).
+	 * @param locality True to visit commits in topological order, so that
+	 * 		  the commits on a branch are visited together. The whole history
+	 * 		  is walked before the first pair is produced.
+	 * @throws IOException when HEAD cannot be read.
+	 */
+	public CommitPairSource(Repository repository, int limit, boolean locality) throws IOException {
+		this(repository, limit, locality, null);
+	}
+
+	/**
+	 * @param repository The repository to walk, starting at HEAD.
+	 * @param limit The maximum number of pairs to produce (zero for no limit).
+	 * @param locality True to visit commits in topological order.
+	 * @param filter Limits the commits that are visited, or null to visit
+	 * 		  every commit. The metrics only cover the commits that pass the
+	 * 		  filter.
+	 * @throws IOException when HEAD cannot be read.
+	 */
+	public CommitPairSource(Repository repository, int limit, boolean locality, HistoryFilter filter) throws IOException {
+
+		this.locality = locality;
+		this.filtered = filter != null && !filter.isEmpty();
+		this.limit = limit;
+		this.produced = 0;
+		this.commitCount = 0;
+		this.authorsEmails = new HashSet<String>();
+
+		ObjectId head = repository.resolve(Constants.HEAD);
+		if(head == null) return; // Empty repository.
+
+		this.walk = new RevWalk(repository);
+		if(locality) this.walk.sort(RevSort.TOPO);
+		if(this.filtered) filter.apply(this.walk);
+		this.walk.markStart(this.walk.parseCommit(head));
+
+	}
+
+	/**
+	 * @param index The commit index for HEAD.
+	 * @param limit The maximum number of pairs to produce (zero for no limit).
+	 */
+	public CommitPairSource(CommitIndex index, int limit) {
+		this(index, limit, false);
+	}
+
+	/**
+	 * @param index The commit index for HEAD.
+	 * @param limit The maximum number of pairs to produce (zero for no limit).
+	 * @param locality True to visit each commit just before its first parent
+	 * 		  where possible.
+	 */
+	public CommitPairSource(CommitIndex index, int limit, boolean locality) {
+
+		this.locality = locality;
+		this.limit = limit;
+		this.produced = 0;
+		this.commitCount = 0;
+		this.authorsEmails = new HashSet<String>();
+
+		this.indexEntries = locality ? index.getLocalityOrder().iterator() : index.getEntries().iterator();
+		this.indexAuthors = index.getAuthors();
+
+	}
+
+	@Override
+	public boolean hasNext() {
+
+		while(this.next == null && this.indexEntries != null) {
+
+			if((this.limit > 0 && this.produced >= this.limit) || !this.indexEntries.hasNext()) {
+				this.close();
+				break;
+			}
+
+			this.visit(this.indexEntries.next());
+
+		}
+
+		while(this.next == null && this.walk != null) {
+
+			if(this.limit > 0 && this.produced >= this.limit) {
+				this.close();
+				break;
+			}
+
+			RevCommit commit;
+			try {
+				commit = this.walk.next();
+			} catch (IOException e) {
+				throw new RuntimeException("Could not walk the history.", e);
+			}
+
+			if(commit == null) {
+				this.close();
+				break;
+			}
+
+			this.visit(commit);
+
+		}
+
+		return this.next != null;
+
+	}
+
+	@Override
+	public Triple<String, String, Type> next() {
+		if(!this.hasNext()) throw new NoSuchElementException();
+		Triple<String, String, Type> pair = this.next;
+		this.next = null;
+		this.produced++;
+		return pair;
+	}
+
+	/**
+	 * Stops the walk and releases its resources.
+	 */
+	public void close() {
+		if(this.walk != null) {
+			this.walk.release();
+			this.walk = null;
+		}
+		this.indexEntries = null;
+	}
+
+	/**
+	 * Updates the metrics and builds the pair for a commit.
+	 */
+	private void visit(RevCommit commit) {
+
+		PersonIdent authorIdent = commit.getAuthorIdent();
+		this.authorsEmails.add(authorIdent.getEmailAddress());
+
+		this.commitCount++;
+		this.visitDate(authorIdent.getWhen());
+
+		/* Try to infer the commit type from the commit message. */
+		Type commitMessageType = getCommitMessageType(commit.getFullMessage());
+
+		if(commit.getParentCount() > 0) {
+			this.next = Triple.of(commit.getParent(0).name(), commit.name(), commitMessageType);
+		}
+
+		/* The message is no longer needed; don't keep it for the rest of the
+		 * walk. */
+		commit.disposeBody();
+
+	}
+
+	/**
+	 * Updates the first and last commit dates. The first commit visited is
+	 * HEAD (what we call "last"). In history order, the last commit visited
+	 * is the oldest, otherwise the oldest date is kept.
+	 */
+	private void visitDate(Date when) {
+		if(this.commitCount == 1) this.lastCommitDate = when;
+		if(!this.locality || this.firstCommitDate == null || when.before(this.firstCommitDate))
+			this.firstCommitDate = when;
+	}
+
+	/**
+	 * Updates the metrics and builds the pair for an indexed commit.
+	 */
+	private void visit(CommitIndex.Entry entry) {
+
+		this.authorsEmails.add(this.indexAuthors.get(entry.author));
+
+		this.commitCount++;
+		this.visitDate(new Date(entry.time));
+
+		if(entry.parents.length > 0) {
+			this.next = Triple.of(entry.parents[0].name(), entry.id.name(), entry.type);
+		}
+
+	}
+
+	/**
+	 * @return The number of commits visited.
+	 */
+	public int getCommitCount() {
+		return this.commitCount;
+	}
+
+	/**
+	 * @return The number of authors of the commits visited.
+	 */
+	public int getNumberAuthors() {
+		return this.authorsEmails.size();
+	}
+
+	/**
+	 * @return The date of the most recent commit.
+	 */
+	public Date getLastCommitDate() {
+		return this.lastCommitDate;
+	}
+
+	/**
+	 * @return The date of the oldest commit visited.
+	 */
+	public Date getFirstCommitDate() {
+		return this.firstCommitDate;
+	}
+
+	/**
+	 * @return True if a filter limits the commits that are visited, in which
+	 * 		   case the metrics do not describe the whole project.
+	 */
+	public boolean isFiltered() {
+		return this.filtered;
+	}
+
+	/**
+	 * @return True if the whole history has been visited.
+	 */
+	public boolean isExhausted() {
+		return this.walk == null && this.indexEntries == null && this.next == null
+				&& !(this.limit > 0 && this.produced >= this.limit);
+	}
+
+	/**
+	 * Infers the commit type from the commit message.
+	 * @param message The full commit message.
+	 * @return MERGE if the message mentions a merge, BUG_FIX if it mentions
+	 * 		   a fix, bug or repair, otherwise OTHER.
+	 */
+	public static Type getCommitMessageType(String message) {
+		if(MERGE_PATTERN.matcher(message).find()) return Type.MERGE;
+		if(BUG_FIX_PATTERN.matcher(message).find()) return Type.BUG_FIX;
+		return Type.OTHER;
+	}
+
+}
@@ -4,6 +4,9 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.InvalidRemoteException;
@@ -48,36 +51,79 @@ public class GitMetricsExtractorMain {
 		List<String> lines = parseInputFile(options.getInputPath());
 
 		/*
-		 * Iterate over them and get statistics
+		 * Get the statistics for several projects at once. Each project is
+		 * cloned or pulled, and its metrics are computed, on a pool thread.
 		 */
-		GitMetricsExtractorOutput metricsOutput = new GitMetricsExtractorOutput(options.getOutputPath());
+		final GitMetricsExtractorOutput metricsOutput = new GitMetricsExtractorOutput(options.getOutputPath());
+		ExecutorService executor = Executors.newFixedThreadPool(options.getNThreads());
+
+		long startTime = System.currentTimeMillis();
+
+		for (final String line : lines) {
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						extract(line, metricsOutput);
+					} catch (Exception e) {
+						System.err.println("* Error while accessing repository " + line + ": " + e.getMessage());
+					}
+				}
+			});
+		}
 
-		for (String line : lines) {
-			GitProject project;
+		/* Wait for all projects to finish. */
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+		}
 
-			/*
-			 * If line has a ",", this is a module csv file with the number of
-			 * downloads over the last month
-			 */
-			if (line.contains(",")) {
-				String uri = line.split(",")[0];
-				Integer downloadsLastMonth = Integer.parseInt(line.split(",")[1]);
+		/* Close stream */
+		metricsOutput.closeStream();
 
-				project = GitProject.fromURI(uri, CHECKOUT_DIR);
-				project.setDownloadsLastMonth(downloadsLastMonth);
-			} else {
-				project = GitProject.fromURI(line, CHECKOUT_DIR);
-			}
+		System.out.println("* Processed " + lines.size() + " repositories in "
+				+ (System.currentTimeMillis() - startTime) / 1000.0 + " seconds");
 
-			System.out.println("* Accessing repository: " + project.getURI());
+	}
 
-			/* Get and write metrics to output file */
-			metricsOutput.output(project);
+	/**
+	 * Clones or pulls a project, then computes and writes its metrics.
+	 *
+	 * @param line The line from the input file.
+	 * @param metricsOutput Where the metrics are written.
+	 */
+	private static void extract(String line, GitMetricsExtractorOutput metricsOutput)
+			throws InvalidRemoteException, TransportException, GitProjectAnalysisException, GitAPIException {
+		long startTime = System.currentTimeMillis();
+
+		GitProject project;
+
+		/*
+		 * If line has a ",", this is a module csv file with the number of
+		 * downloads over the last month
+		 */
+		if (line.contains(",")) {
+			String uri = line.split(",")[0];
+			Integer downloadsLastMonth = Integer.parseInt(line.split(",")[1]);
+
+			project = GitProject.fromURI(uri, CHECKOUT_DIR);
+			project.setDownloadsLastMonth(downloadsLastMonth);
+		} else {
+			project = GitProject.fromURI(line, CHECKOUT_DIR);
 		}
 
-		/* Close stream */
-		metricsOutput.closeStream();
+		long fetchTime = System.currentTimeMillis();
+		System.out.println("* Accessing repository: " + project.getURI());
+
+		/* Get and write metrics to output file */
+		metricsOutput.output(project);
 
+		long endTime = System.currentTimeMillis();
+		System.out.println("* Finished repository: " + project.getURI()
+				+ " (clone/pull " + (fetchTime - startTime) / 1000.0
+				+ "s, metrics " + (endTime - fetchTime) / 1000.0 + "s)");
 	}
 
 	/**
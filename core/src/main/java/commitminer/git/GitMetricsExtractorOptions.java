@@ -16,6 +16,9 @@ public class GitMetricsExtractorOptions {
 	@Option(name = "-mrx", aliases = { "--message_regex" }, usage = "The regular expression that a commit message must match in order to be analyzed")
 	private String commitMessageRegex = "^.*$";
 
+	@Option(name = "-tr", aliases = { "--threads" }, usage = "The number of repositories to process concurrently.")
+	private Integer nThreads = 6;
+
 	public boolean getHelp() {
 		return this.help;
 	}
@@ -28,6 +31,10 @@ public class GitMetricsExtractorOptions {
 		return this.outputPath;
 	}
 
+	public Integer getNThreads() {
+		return this.nThreads;
+	}
+
 	public String getCommitMessageRegex() {
 		return this.commitMessageRegex;
 	}
@@ -1,5 +1,6 @@
 package commitminer.git;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -8,7 +9,9 @@ import java.io.PrintStream;
 /**
  * Output the metrics of GitProjects on a text file. File stream and header are
  * created on constructor, method output(GitProject) is used to append rows and
- * closeStream() finalize its execution
+ * closeStream() finalize its execution. The metrics are computed by the
+ * calling thread and rows are written one at a time, so several projects can
+ * be output concurrently.
  */
 public class GitMetricsExtractorOutput {
 	private PrintStream stream;
@@ -22,7 +25,7 @@ public class GitMetricsExtractorOutput {
 			File path = new File(filePath);
 			path.getParentFile().mkdirs();
 
-			stream = new PrintStream(new FileOutputStream(filePath));
+			stream = new PrintStream(new BufferedOutputStream(new FileOutputStream(filePath)));
 			writeHeaders();
 		} catch (IOException e) {
 			System.err.println(e.getMessage());
@@ -45,10 +48,12 @@ public class GitMetricsExtractorOutput {
 		String row = String.join(",", name, URI, totalCommits, totalBugFixingCommits, numberAuthors, numberFiles,
 				linesOfCode, stargazers, downloadsLastMonth, lastCommit, firstCommit);
 
-		stream.println(row);
+		synchronized(this) {
+			stream.println(row);
+		}
 	}
 
-	public void closeStream() {
+	public synchronized void closeStream() {
 		stream.close();
 	}
 
@@ -1,14 +1,10 @@
 package commitminer.git;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -22,11 +18,14 @@ import org.eclipse.jgit.api.PullResult;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.InvalidRemoteException;
 import org.eclipse.jgit.api.errors.TransportException;
-import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryBuilder;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
 
@@ -79,6 +78,17 @@ public class GitProject {
 	/** Dates of last (most recent) and first commit **/
 	protected Date lastCommitDate, firstCommitDate;
 
+	/** If true, the history is read from the commit index, which is updated
+	 * as needed, instead of being walked. **/
+	protected boolean useCommitIndex = true;
+
+	/** If true, commit pairs are produced in an order that keeps blob reads
+	 * close together instead of in history order. **/
+	protected boolean localityOrder = false;
+
+	/** Limits the commits that are analyzed. Null to analyze every commit. **/
+	protected HistoryFilter historyFilter;
+
 	/**
 	 * Constructor that is used by our static factory methods.
 	 * @param commitMessageRegex
@@ -102,6 +112,9 @@ public class GitProject {
 	 */
 	protected GitProject(GitProject project) {
 		this(project.git, project.repository, project.URI);
+		this.useCommitIndex = project.useCommitIndex;
+		this.localityOrder = project.localityOrder;
+		this.historyFilter = project.historyFilter;
 	}
 
 	/*
@@ -117,35 +130,35 @@ public class GitProject {
 
 	public Integer getTotalCommits() {
 		if (this.totalCommits == null)
-			getCommitPairs();
+			getCommitMetrics();
 
 		return this.totalCommits;
 	}
 
 	public Integer getBugFixingCommits() {
 		if (this.mergeCommits == null || this.totalCommits == null)
-			getCommitPairs();
+			getCommitMetrics();
 
 		return this.mergeCommits - this.totalCommits;
 	}
 
 	public Integer getNumberAuthors() {
 		if (this.numberAuthors == null)
-			getCommitPairs();
+			getCommitMetrics();
 
 		return this.numberAuthors;
 	}
 
 	public Date getLastCommitDate() {
 		if (this.lastCommitDate == null)
-			getCommitPairs();
+			getCommitMetrics();
 
 		return this.lastCommitDate;
 	}
 
 	public Date getFirstCommitDate() {
 		if (this.firstCommitDate == null)
-			getCommitPairs();
+			getCommitMetrics();
 
 		return this.firstCommitDate;
 	}
@@ -165,6 +178,32 @@ public class GitProject {
 		return numberOfLines;
 	}
 
+	/**
+	 * @param useCommitIndex If true (the default), the history is read from a
+	 * 		  commit index in the project's .git directory.
+	 */
+	public void setUseCommitIndex(boolean useCommitIndex) {
+		this.useCommitIndex = useCommitIndex;
+	}
+
+	/**
+	 * @param localityOrder If true, each commit pair is followed by the pair
+	 * 		  for its first parent where possible (see
+	 * 		  {@code CommitPairSource}), so consecutive pairs share a tree.
+	 */
+	public void setLocalityOrder(boolean localityOrder) {
+		this.localityOrder = localityOrder;
+	}
+
+	/**
+	 * @param historyFilter Limits the commits that are analyzed to a time
+	 * 		  window, a set of authors and a set of directories. The project
+	 * 		  metrics still cover the whole history.
+	 */
+	public void setHistoryFilter(HistoryFilter historyFilter) {
+		this.historyFilter = historyFilter;
+	}
+
 	public Integer getDownloadsLastMonth() {
 		return this.downloadsLastMonth;
 	}
@@ -197,142 +236,187 @@ public class GitProject {
 	}
 
 	/**
-	 * Uses the command line tool "ohcount" to get the number of javascript
-	 * files and the number of javascript lines of code on the repository
+	 * Counts the number of javascript files and the number of javascript
+	 * lines of code at HEAD (see {@code SourceMetrics}).
 	 */
 	protected void getFilesMetrics() {
-		Runtime runtime = Runtime.getRuntime();
-		Process process;
-
-		String[] command = { "/bin/sh", "-c", "ohcount " + repository.getDirectory().getParent().toString()
-				+ " | grep javascript | tr -s ' ' | cut -d ' ' -f 2,3" };
-
 		try {
-			/* Check if ohcount is available */
-			process = runtime.exec("which ohcount");
-			process.waitFor();
-			if (process.exitValue() != 0)
-				throw new RuntimeException("Could not find ohcount command tool. Perphaphs not installed?");
+			SourceMetrics metrics = SourceMetrics.fromHead(this.repository);
+			this.numberOfFiles = metrics.files;
+			this.numberOfLines = metrics.lines;
+		} catch (IOException e) {
+			e.printStackTrace();
 
+			this.numberOfFiles = 0;
+			this.numberOfLines = 0;
+		}
+	}
 
-			/* Run command */
-			process = runtime.exec(command);
-			process.waitFor();
+	/**
+	 * Estimates the cost of analyzing the project, so that large projects can
+	 * be started first. The estimate is the number of commits times the number
+	 * of JavaScript source files at HEAD. Only the commit index (or commit
+	 * headers) and the HEAD tree are read, so the estimate is cheap compared
+	 * to the analysis.
+	 * @return The estimated cost (zero for an empty repository).
+	 * @throws IOException when the repository cannot be read.
+	 */
+	public long getCostEstimate() throws IOException {
 
-			/* Get the output */
-			BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-			String[] output = bufferedReader.readLine().split(" ");
+		ObjectId head = this.repository.resolve(Constants.HEAD);
+		if(head == null) return 0;
 
-			this.numberOfFiles = Integer.parseInt(output[0]);
-			this.numberOfLines = Integer.parseInt(output[1]);
+		long commits = 0;
+		long files = 0;
 
-			bufferedReader.close();
-		} catch (IOException | InterruptedException e) {
-			e.printStackTrace();
+		RevWalk walk = new RevWalk(this.repository);
+		try {
+			walk.setRetainBody(false);
+			RevCommit headCommit = walk.parseCommit(head);
+			if(this.useCommitIndex) {
+				commits = CommitIndex.open(this.repository).getEntries().size();
+			}
+			else {
+				walk.markStart(headCommit);
+				while(walk.next() != null) commits++;
+			}
 
-			this.numberOfFiles = 0;
-			this.numberOfLines = 0;
+			TreeWalk treeWalk = new TreeWalk(this.repository);
+			try {
+				treeWalk.addTree(headCommit.getTree());
+				treeWalk.setRecursive(true);
+				treeWalk.setFilter(SourceFileFilter.INSTANCE);
+				while(treeWalk.next()) files++;
+			}
+			finally {
+				treeWalk.release();
+			}
+		}
+		finally {
+			walk.release();
 		}
+
+		return commits * Math.max(1, files);
+
 	}
 
 	/**
 	 * Extracts revision identifier pairs from bug fixing commits. The pair
 	 * includes the bug fixing commit and the previous (buggy) commit.
 	 *
-	 * @param git The project git instance.
-	 * @param repository The project git repository.
-	 * @param buggyRevision The hash that identifies the buggy revision.
-	 * @param bugFixingRevision The hash that identifies the fixed revision.
-	 * @throws IOException
-	 * @throws GitAPIException
+	 * The whole history is walked, so the project metrics are also updated.
+	 * Use {@code getCommitPairSource} to process pairs as they are found.
+	 *
+	 * @return The commit pairs, starting with the most recent commit.
 	 */
 	protected List<Triple<String, String, Type>> getCommitPairs() {
 		List<Triple<String, String, Type>> bugFixingCommits = new LinkedList<Triple<String, String, Type>>();
-		int mergeCommits = 0, commitCounter = 0;
-
-		Set<String> authorsEmails = new HashSet<>();
 
-		Date lastCommitDate = null;
-		Date firstCommitDate = null;
-
-		/*
-		 * Call git log command
-		 */
-		Iterable<RevCommit> commits;
+		CommitPairSource source;
 		try {
-			commits = git.log().call();
-		} catch (GitAPIException e) {
+			source = this.getCommitPairSource(0);
+		} catch (IOException e) {
 			e.printStackTrace();
 			return bugFixingCommits;
 		}
 
 		/* Starts with the most recent commit and goes back in time. */
-		for (RevCommit commit : commits) {
-
-			/*
-			 * Add author to authors list
-			 */
-			PersonIdent authorIdent = commit.getAuthorIdent();
-			authorsEmails.add(authorIdent.getEmailAddress());
-
-			/* Try to infer the commit type from the commit message. */
-			Type commitMessageType = Type.OTHER;
-			String message = commit.getFullMessage();
-			commitCounter++;
+		while(source.hasNext()) {
+			bugFixingCommits.add(source.next());
+		}
 
-			/* Merge pattern */
-			Pattern pEx = Pattern.compile("merge", Pattern.CASE_INSENSITIVE);
-			Matcher mEx = pEx.matcher(message);
+		/* Keep track of the number of commits and other metrics for reporting. */
+		this.recordMetrics(source);
 
-			/* Bug fixing commit pattern */
-			Pattern pBFC = Pattern.compile("(fix|bug|repair)", Pattern.CASE_INSENSITIVE);
-			Matcher mBFC = pBFC.matcher(message);
+		return bugFixingCommits;
+	}
 
-			if(mEx.find()) commitMessageType = Type.MERGE;
-			else if(mBFC.find()) commitMessageType = Type.BUG_FIX;
+	/**
+	 * Walks the whole history to compute the project metrics, without
+	 * keeping the commit pairs.
+	 */
+	protected void getCommitMetrics() {
+		CommitPairSource source;
+		try {
+			source = this.getCommitPairSource(0, null);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
 
-			/*
-			 * If the commit message contains one of our fix keywords, label it as a bug fixing commit.
-			 */
-			if(commit.getParentCount()  > 0) {
-				bugFixingCommits.add(Triple.of(commit.getParent(0).name(), commit.name(), commitMessageType));
-			}
+		while(source.hasNext()) source.next();
 
-			/*
-			 * First commit on iteration is most recent one (what we call "last")
-			 */
-			if (commitCounter == 1)
-				lastCommitDate = authorIdent.getWhen();
+		this.recordMetrics(source);
+	}
 
-			/*
-			 * Store the date of this commit. When iteration is over, we have
-			 * the date for first one
-			 */
-			firstCommitDate = authorIdent.getWhen();
+	/**
+	 * @param limit The maximum number of pairs to produce (zero for no limit).
+	 * @return A source that lazily walks the history and produces revision
+	 * 		   identifier pairs as they are found.
+	 * @throws IOException when the history cannot be read.
+	 */
+	protected CommitPairSource getCommitPairSource(int limit) throws IOException {
+		return this.getCommitPairSource(limit, this.historyFilter);
+	}
 
+	/**
+	 * @param limit The maximum number of pairs to produce (zero for no limit).
+	 * @param filter Limits the commits that are visited, or null.
+	 * @return A source that lazily walks the history and produces revision
+	 * 		   identifier pairs as they are found.
+	 * @throws IOException when the history cannot be read.
+	 */
+	private CommitPairSource getCommitPairSource(int limit, HistoryFilter filter) throws IOException {
+		/* The index has no file paths, so a filtered history is walked. */
+		if(filter != null && !filter.isEmpty())
+			return new CommitPairSource(this.repository, limit, this.localityOrder, filter);
+		if(this.useCommitIndex) {
+			try {
+				return new CommitPairSource(CommitIndex.open(this.repository), limit, this.localityOrder);
+			} catch (IOException e) {
+				logger.warn("[INDEX] Could not use the commit index for {}: {}", this.URI, e.getMessage());
+			}
 		}
+		return new CommitPairSource(this.repository, limit, this.localityOrder);
+	}
 
-		/* Keep track of the number of commits and other metrics for reporting. */
-		this.mergeCommits = mergeCommits;
-		this.totalCommits = commitCounter;
-		this.numberAuthors = authorsEmails.size();
-		this.lastCommitDate = lastCommitDate;
-		this.firstCommitDate = firstCommitDate;
-
-		return bugFixingCommits;
+	/**
+	 * Stores the project metrics that were computed while walking the
+	 * history.
+	 * @param source A source that has walked the whole history. Ignored if
+	 * 		  the source was filtered.
+	 */
+	protected void recordMetrics(CommitPairSource source) {
+		/* A filtered walk does not describe the whole project. */
+		if(source.isFiltered()) return;
+		this.mergeCommits = 0;
+		this.totalCommits = source.getCommitCount();
+		this.numberAuthors = source.getNumberAuthors();
+		this.lastCommitDate = source.getLastCommitDate();
+		this.firstCommitDate = source.getFirstCommitDate();
 	}
 
 
 	/**
-	 * Extracts the git project name from the URI.
+	 * Extracts the git project name from the URI. The name includes the
+	 * owner, so that forks of a project (which have the same repository name)
+	 * are kept apart.
 	 *
 	 * @param uri The uri (e.g., https://github.com/karma-runner/karma.git)
-	 * @return The project name.
+	 * @return The project name (e.g., karma-runner/karma), or just the
+	 * 		   repository name if the URI has no owner.
 	 */
 	protected static String getGitProjectName(String uri) throws GitProjectAnalysisException {
+		/* Get the owner and name of the project. */
+		Pattern ownerPattern = Pattern.compile("([^/:]+)[/:]([^/:]+)\\.git");
+		Matcher matcher = ownerPattern.matcher(uri);
+		if (matcher.find()) {
+			return matcher.group(1) + "/" + matcher.group(2);
+		}
+
 		/* Get the name of the project. */
-		Pattern namePattern = Pattern.compile("([^/]+)\\.git");
-		Matcher matcher = namePattern.matcher(uri);
+		Pattern namePattern = Pattern.compile("([^/:]+)\\.git");
+		matcher = namePattern.matcher(uri);
 
 		if (!matcher.find()) {
 			throw new GitProjectAnalysisException("Could not find the .git name in the URI.");
@@ -353,7 +437,8 @@ public class GitProject {
 
 	/**
 	 * Creates the directory for the repository given the URI and the base
-	 * directory to store all repositories.
+	 * directory to store all repositories. Each owner has its own directory,
+	 * so forks are cloned into different directories.
 	 *
 	 * @param uri The uri (e.g., https://github.com/karma-runner/karma.git)
 	 * @param directory The directory for the repositories.
@@ -0,0 +1,141 @@
+package commitminer.git;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
+import org.eclipse.jgit.revwalk.filter.AuthorRevFilter;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.revwalk.filter.OrRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Limits the commits that are analyzed to a time window, a set of authors
+ * and a set of directories.
+ *
+ * The filters are applied by the {@code RevWalk} that walks the history, so
+ * commits outside the window, by other authors or that do not touch the
+ * directories are skipped before any diff is computed or blob is read. The
+ * walk stops at the first commit older than the window. The directories
+ * also limit the files that are compared in each commit.
+ */
+public class HistoryFilter {
+
+	/** The format of the dates on the command line. **/
+	public static final String DATE_FORMAT = "yyyy-MM-dd";
+
+	/** The length of a day (in milliseconds). **/
+	private static final long DAY = 24 * 60 * 60 * 1000;
+
+	/** The earliest commit time to analyze. Null for no limit. **/
+	public Date since;
+
+	/** The latest commit time to analyze. Null for no limit. **/
+	public Date until;
+
+	/** The authors to analyze (names or emails). Empty for all authors. **/
+	public List<String> authors;
+
+	/** The directories (or files) to analyze, relative to the repository
+	 * root. Empty for the whole repository. **/
+	public List<String> paths;
+
+	public HistoryFilter() {
+		this.authors = new LinkedList<String>();
+		this.paths = new LinkedList<String>();
+	}
+
+	/**
+	 * @return True if no commits are filtered out.
+	 */
+	public boolean isEmpty() {
+		return this.since == null && this.until == null
+				&& this.authors.isEmpty() && this.paths.isEmpty();
+	}
+
+	/**
+	 * Applies the filters to a walk. Parents are not rewritten, so the first
+	 * parent of a commit that passes the filters is still its real parent.
+	 * @param walk The walk to filter, before it is started.
+	 */
+	public void apply(RevWalk walk) {
+
+		List<RevFilter> filters = new LinkedList<RevFilter>();
+
+		if(this.since != null && this.until != null)
+			filters.add(CommitTimeRevFilter.between(this.since, this.until));
+		else if(this.since != null)
+			filters.add(CommitTimeRevFilter.after(this.since));
+		else if(this.until != null)
+			filters.add(CommitTimeRevFilter.before(this.until));
+
+		if(!this.authors.isEmpty()) {
+			List<RevFilter> authorFilters = new LinkedList<RevFilter>();
+			for(String author : this.authors)
+				authorFilters.add(AuthorRevFilter.create(Pattern.quote(author)));
+			filters.add(authorFilters.size() == 1 ? authorFilters.get(0) : OrRevFilter.create(authorFilters));
+		}
+
+		if(filters.size() == 1) walk.setRevFilter(filters.get(0));
+		else if(filters.size() > 1) walk.setRevFilter(AndRevFilter.create(filters));
+
+		if(!this.paths.isEmpty()) {
+			walk.setTreeFilter(AndTreeFilter.create(this.getPathFilter(), TreeFilter.ANY_DIFF));
+			walk.setRewriteParents(false);
+		}
+
+	}
+
+	/**
+	 * @return A filter for the files under the directories, or
+	 * 		   {@code TreeFilter.ALL} if every file is analyzed.
+	 */
+	public TreeFilter getPathFilter() {
+		if(this.paths.isEmpty()) return TreeFilter.ALL;
+		return PathFilterGroup.createFromStrings(this.paths);
+	}
+
+	/**
+	 * Builds a filter from command line values.
+	 * @param since The earliest date to analyze (yyyy-MM-dd), or null.
+	 * @param until The latest date to analyze (yyyy-MM-dd, inclusive), or
+	 * 		  null.
+	 * @param authors A comma separated list of author names or emails, or
+	 * 		  null.
+	 * @param paths A comma separated list of directories, or null.
+	 * @return The filter.
+	 * @throws ParseException when a date is not in yyyy-MM-dd format.
+	 */
+	public static HistoryFilter fromStrings(String since, String until, String authors, String paths) throws ParseException {
+		HistoryFilter filter = new HistoryFilter();
+		SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT);
+		format.setLenient(false);
+		if(since != null) filter.since = format.parse(since);
+		if(until != null) filter.until = new Date(format.parse(until).getTime() + DAY - 1);
+		split(authors, filter.authors);
+		split(paths, filter.paths);
+		return filter;
+	}
+
+	/**
+	 * Adds the non-empty values of a comma separated list to a list. A
+	 * trailing slash is removed from paths, since git paths have none.
+	 */
+	private static void split(String values, List<String> list) {
+		if(values == null) return;
+		for(String value : values.split(",")) {
+			value = value.trim();
+			while(value.endsWith("/")) value = value.substring(0, value.length() - 1);
+			if(!value.isEmpty()) list.add(value);
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package commitminer.git;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+/**
+ * Configures JGit's process-wide pack file caches.
+ *
+ * JGit reads pack files through a window cache (fixed size windows onto the
+ * pack files) and keeps recently inflated delta bases in a delta base
+ * cache. The defaults (10 MB of windows and 10 MB of delta bases) are small
+ * for large repositories, where reading a blob means walking a long delta
+ * chain. The caches are shared by every repository in the JVM, so they are
+ * configured once, before any repository is opened.
+ */
+public class PackCacheConfig {
+
+	protected static final Logger logger = LogManager.getLogger(PackCacheConfig.class);
+
+	private static final int MB = 1024 * 1024;
+
+	private static final int KB = 1024;
+
+	/**
+	 * Reconfigures the caches. Any value less than or equal to zero keeps
+	 * JGit's default.
+	 * @param packedGitLimitMB The total size of the windows (in MB).
+	 * @param windowSizeKB The size of one window (in KB, a power of two).
+	 * @param deltaBaseCacheLimitMB The size of the delta base cache (in MB).
+	 * @param openFiles The number of pack files to keep open.
+	 */
+	public static void configure(int packedGitLimitMB, int windowSizeKB,
+								 int deltaBaseCacheLimitMB, int openFiles) {
+
+		WindowCacheConfig config = new WindowCacheConfig();
+		if(packedGitLimitMB > 0) config.setPackedGitLimit((long)packedGitLimitMB * MB);
+		if(windowSizeKB > 0) config.setPackedGitWindowSize(windowSizeKB * KB);
+		if(deltaBaseCacheLimitMB > 0) config.setDeltaBaseCacheLimit(deltaBaseCacheLimitMB * MB);
+		if(openFiles > 0) config.setPackedGitOpenFiles(openFiles);
+
+		config.install();
+
+		logger.info("[PACK CACHE] windows {} MB ({} KB each), delta bases {} MB, {} open files",
+				config.getPackedGitLimit() / MB, config.getPackedGitWindowSize() / KB,
+				config.getDeltaBaseCacheLimit() / MB, config.getPackedGitOpenFiles());
+
+	}
+
+}
@@ -0,0 +1,138 @@
+package commitminer.git;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import commitminer.batch.GitProjectAnalysisException;
+
+/**
+ * Clones or pulls repositories in the background, so that repositories can
+ * be analyzed as soon as they are ready instead of after every repository
+ * has been acquired.
+ *
+ * Acquisition is I/O-bound, so it has its own (small) number of threads,
+ * separate from the threads that analyze commits. Each repository is handed
+ * to the listener on the acquiring thread as soon as it is ready. Any URI
+ * that JGit can clone works, including local {@code file://} remotes.
+ *
+ * Repositories that are cloned into the same directory (e.g., a URI that is
+ * listed twice) are acquired one at a time, so that a pull never runs while
+ * the directory is still being cloned.
+ */
+public class RepositoryAcquirer {
+
+	protected static final Logger logger = LogManager.getLogger(RepositoryAcquirer.class);
+
+	/** The directory that stores the cloned repositories. **/
+	private String directory;
+
+	/** Clones or pulls the repositories. **/
+	private ExecutorService executor;
+
+	/** The pending acquisitions. **/
+	private List<Future<?>> acquisitions;
+
+	/** Serializes the acquisitions of each checkout directory. **/
+	private ConcurrentMap<String, Object> locks;
+
+	/**
+	 * @param directory The directory that stores the cloned repositories.
+	 * @param nThreads The number of repositories to clone or pull at once.
+	 */
+	public RepositoryAcquirer(String directory, int nThreads) {
+		this.directory = directory;
+		this.executor = Executors.newFixedThreadPool(Math.max(1, nThreads));
+		this.acquisitions = new LinkedList<Future<?>>();
+		this.locks = new ConcurrentHashMap<String, Object>();
+	}
+
+	/**
+	 * Starts cloning (or pulling) a repository.
+	 * @param uri The remote .git address.
+	 * @param listener Receives the repository when it is ready.
+	 */
+	public synchronized void acquire(final String uri, final Listener listener) {
+		this.acquisitions.add(this.executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				GitProject project;
+				try {
+					logger.info("[ACQUIRE] {}", uri);
+					synchronized(getLock(uri)) {
+						project = GitProject.fromURI(uri, directory);
+					}
+				} catch (Exception e) {
+					logger.error("[ACQUIRE] Could not clone or pull {}: {}", uri, e.getMessage());
+					listener.failed(uri, e);
+					return;
+				}
+				listener.acquired(project);
+			}
+		}));
+	}
+
+	/**
+	 * @param uri The remote .git address.
+	 * @return The lock for the directory that the repository is cloned into.
+	 */
+	private Object getLock(String uri) throws GitProjectAnalysisException, IOException {
+		String key = GitProject.getGitDirectory(uri, this.directory).getCanonicalPath();
+		Object lock = new Object();
+		Object existing = this.locks.putIfAbsent(key, lock);
+		return existing == null ? lock : existing;
+	}
+
+	/**
+	 * Waits for all the acquisitions that have been started, then stops the
+	 * acquisition threads.
+	 * @throws InterruptedException
+	 */
+	public void close() throws InterruptedException {
+		List<Future<?>> acquisitions;
+		synchronized(this) {
+			acquisitions = new LinkedList<Future<?>>(this.acquisitions);
+		}
+		try {
+			for(Future<?> acquisition : acquisitions) {
+				try {
+					acquisition.get();
+				} catch (ExecutionException e) {
+					logger.error("[ACQUIRE] {}", e.getCause().getMessage());
+				}
+			}
+		}
+		finally {
+			this.executor.shutdown();
+		}
+	}
+
+	/**
+	 * Receives repositories as they are acquired. Methods are called on the
+	 * acquisition threads.
+	 */
+	public interface Listener {
+
+		/**
+		 * @param project A repository that has been cloned or pulled.
+		 */
+		void acquired(GitProject project);
+
+		/**
+		 * @param uri The URI of a repository that could not be acquired.
+		 * @param e The reason the repository could not be acquired.
+		 */
+		void failed(String uri, Exception e);
+
+	}
+
+}
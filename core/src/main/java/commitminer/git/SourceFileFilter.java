@@ -0,0 +1,63 @@
+package commitminer.git;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * A tree filter that only includes the JavaScript source files we analyze.
+ *
+ * Minified files and jQuery files are excluded, since they are not written
+ * by the project's developers. Directories with jQuery in their path are
+ * pruned, so their contents are never compared. Because the filter is
+ * applied while the trees are walked, changes to other files (e.g.,
+ * documentation, images and lock files) are never turned into diff
+ * entries.
+ */
+public class SourceFileFilter extends TreeFilter {
+
+	/** The filter is stateless, so one instance can be shared. **/
+	public static final SourceFileFilter INSTANCE = new SourceFileFilter();
+
+	private SourceFileFilter() { }
+
+	@Override
+	public boolean include(TreeWalk walker) throws MissingObjectException,
+			IncorrectObjectTypeException, IOException {
+		String path = walker.getPathString();
+		if(path.contains("jquery")) return false;
+		if(walker.isSubtree()) return true;
+		return isSourceFile(path);
+	}
+
+	@Override
+	public boolean shouldBeRecursive() {
+		/* Source files can be in any directory. */
+		return true;
+	}
+
+	@Override
+	public TreeFilter clone() {
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "SOURCE_FILES";
+	}
+
+	/**
+	 * @param path The path of a file in the repository.
+	 * @return True if the file is a JavaScript source file that should be
+	 * 		   analyzed.
+	 */
+	public static boolean isSourceFile(String path) {
+		return path.endsWith(".js")
+				&& !path.endsWith(".min.js")
+				&& !path.contains("jquery");
+	}
+
+}
@@ -0,0 +1,172 @@
+package commitminer.git;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+
+/**
+ * Counts the JavaScript files and the lines of JavaScript code at HEAD.
+ *
+ * The files are read from the HEAD tree in the object database, so no
+ * checkout (or external tool) is needed. Like ohcount, every .js file is
+ * counted, and only lines that contain code are counted (blank lines and
+ * comment lines are not). The files are read in parallel.
+ */
+public class SourceMetrics {
+
+	/** The number of JavaScript files. **/
+	public int files;
+
+	/** The number of lines of JavaScript code. **/
+	public int lines;
+
+	private SourceMetrics(int files, int lines) {
+		this.files = files;
+		this.lines = lines;
+	}
+
+	/**
+	 * Counts the JavaScript files and lines of code at HEAD on the common
+	 * pool.
+	 * @param repository The repository to count.
+	 * @return The metrics (zero files and lines for an empty repository).
+	 * @throws IOException when the repository cannot be read.
+	 */
+	public static SourceMetrics fromHead(Repository repository) throws IOException {
+		return fromHead(repository, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Counts the JavaScript files and lines of code at HEAD.
+	 * @param repository The repository to count.
+	 * @param pool The pool that reads the files.
+	 * @return The metrics (zero files and lines for an empty repository).
+	 * @throws IOException when the repository cannot be read.
+	 */
+	public static SourceMetrics fromHead(final Repository repository, ForkJoinPool pool) throws IOException {
+
+		ObjectId head = repository.resolve(Constants.HEAD);
+		if(head == null) return new SourceMetrics(0, 0);
+
+		/* Find the blobs of the JavaScript files. Only trees are read here. */
+		List<ObjectId> blobs = new ArrayList<ObjectId>();
+		RevWalk walk = new RevWalk(repository);
+		TreeWalk treeWalk = new TreeWalk(repository);
+		try {
+			treeWalk.addTree(walk.parseCommit(head).getTree());
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(PathSuffixFilter.create(".js"));
+			while(treeWalk.next()) blobs.add(treeWalk.getObjectId(0));
+		}
+		finally {
+			treeWalk.release();
+			walk.release();
+		}
+
+		/* Count the lines of each chunk of blobs on the pool. */
+		int chunks = Math.min(blobs.size(), pool.getParallelism() * 4);
+		List<Future<Integer>> counts = new LinkedList<Future<Integer>>();
+		for(int i = 0; i < chunks; i++) {
+			final List<ObjectId> chunk = blobs.subList(i * blobs.size() / chunks, (i + 1) * blobs.size() / chunks);
+			counts.add(pool.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws IOException {
+					return countLines(repository, chunk);
+				}
+			}));
+		}
+
+		int lines = 0;
+		try {
+			for(Future<Integer> count : counts) lines += count.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while counting lines.", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Could not count lines.", e.getCause());
+		}
+
+		return new SourceMetrics(blobs.size(), lines);
+
+	}
+
+	/**
+	 * @return The number of lines of code in the blobs.
+	 */
+	private static int countLines(Repository repository, List<ObjectId> blobs) throws IOException {
+		int lines = 0;
+		ObjectReader reader = repository.newObjectReader();
+		try {
+			for(ObjectId blob : blobs) {
+				BufferedReader in = new BufferedReader(new InputStreamReader(
+						reader.open(blob, Constants.OBJ_BLOB).openStream(), StandardCharsets.UTF_8));
+				try {
+					lines += countCodeLines(in);
+				}
+				finally {
+					in.close();
+				}
+			}
+		}
+		finally {
+			reader.release();
+		}
+		return lines;
+	}
+
+	/**
+	 * Counts the lines that contain code. A line that only contains
+	 * whitespace or comments is not counted. Comment markers inside strings
+	 * and regular expressions are not recognized, which is close enough for
+	 * project metrics.
+	 * @param in The source file.
+	 * @return The number of lines of code.
+	 */
+	public static int countCodeLines(BufferedReader in) throws IOException {
+		int lines = 0;
+		boolean inComment = false;
+		String line;
+		while((line = in.readLine()) != null) {
+			boolean code = false;
+			int i = 0;
+			while(i < line.length()) {
+				if(inComment) {
+					int end = line.indexOf("*/", i);
+					if(end < 0) break;
+					inComment = false;
+					i = end + 2;
+				}
+				else if(line.startsWith("/*", i)) {
+					inComment = true;
+					i += 2;
+				}
+				else if(line.startsWith("//", i)) {
+					break;
+				}
+				else {
+					if(!Character.isWhitespace(line.charAt(i))) code = true;
+					i++;
+				}
+			}
+			if(code) lines++;
+		}
+		return lines;
+	}
+
+}
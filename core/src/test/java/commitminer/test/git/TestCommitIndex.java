@@ -0,0 +1,199 @@
+package commitminer.test.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.util.FileUtils;
+import org.junit.Test;
+
+import commitminer.analysis.Commit.Type;
+import commitminer.git.CommitIndex;
+import commitminer.git.CommitPairSource;
+
+public class TestCommitIndex extends TestCase {
+
+	/**
+	 * Creates a commit with an empty tree.
+	 * @param time The author and commit time (in seconds).
+	 * @return The id of the commit.
+	 */
+	protected ObjectId commit(Repository repository, int time, String message, ObjectId... parents) throws IOException {
+		ObjectInserter inserter = repository.newObjectInserter();
+		try {
+			PersonIdent ident = new PersonIdent("Test", "author" + (time % 3) + "@example.com", time * 1000L, 0);
+			CommitBuilder builder = new CommitBuilder();
+			builder.setTreeId(inserter.insert(new TreeFormatter()));
+			builder.setParentIds(parents);
+			builder.setAuthor(ident);
+			builder.setCommitter(ident);
+			builder.setMessage(message);
+			ObjectId id = inserter.insert(builder);
+			inserter.flush();
+			return id;
+		}
+		finally {
+			inserter.release();
+		}
+	}
+
+	/**
+	 * Moves HEAD (and the branch it points to) to a commit.
+	 */
+	protected void setHead(Repository repository, ObjectId commit) throws IOException {
+		RefUpdate update = repository.updateRef(Constants.HEAD);
+		update.setNewObjectId(commit);
+		update.forceUpdate();
+	}
+
+	/**
+	 * @return The pairs and metrics produced by a source.
+	 */
+	protected List<Object> read(CommitPairSource source) {
+		List<Object> pairs = new LinkedList<Object>();
+		while(source.hasNext()) pairs.add(source.next());
+		pairs.add(source.getCommitCount());
+		pairs.add(source.getNumberAuthors());
+		pairs.add(source.getFirstCommitDate());
+		pairs.add(source.getLastCommitDate());
+		return pairs;
+	}
+
+	/**
+	 * Checks that two indexes store the same commits in the same order.
+	 */
+	protected void assertSameIndex(CommitIndex expected, CommitIndex actual) {
+		assertEquals(expected.getEntries().size(), actual.getEntries().size());
+		for(int i = 0; i < expected.getEntries().size(); i++) {
+			CommitIndex.Entry e = expected.getEntries().get(i);
+			CommitIndex.Entry a = actual.getEntries().get(i);
+			assertEquals(e.id, a.id);
+			assertEquals(e.parents.length, a.parents.length);
+			for(int j = 0; j < e.parents.length; j++) assertEquals(e.parents[j], a.parents[j]);
+			assertEquals(expected.getAuthors().get(e.author), actual.getAuthors().get(a.author));
+			assertEquals(e.time, a.time);
+			assertEquals(e.commitTime, a.commitTime);
+			assertEquals(e.type, a.type);
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		File base = Files.createTempDirectory("index").toFile();
+		Repository repository = Git.init().setBare(true).setDirectory(base).call().getRepository();
+		try {
+			ObjectId first = commit(repository, 100, "Initial commit");
+			ObjectId second = commit(repository, 200, "Fix a bug", first);
+			ObjectId third = commit(repository, 300, "Merge branch", second, first);
+			setHead(repository, third);
+
+			CommitIndex built = CommitIndex.open(repository);
+			assertEquals(3, built.getEntries().size());
+			assertEquals(third, built.getEntries().get(0).id);
+			assertEquals(Type.BUG_FIX, built.getEntries().get(1).type);
+			assertEquals(Type.MERGE, built.getEntries().get(0).type);
+
+			/* HEAD has not moved, so the index is read from the file. */
+			CommitIndex read = CommitIndex.open(repository);
+			assertSameIndex(built, read);
+		}
+		finally {
+			repository.close();
+			FileUtils.delete(base, FileUtils.RECURSIVE | FileUtils.RETRY);
+		}
+	}
+
+	@Test
+	public void testManyParents() throws Exception {
+		File base = Files.createTempDirectory("index").toFile();
+		Repository repository = Git.init().setBare(true).setDirectory(base).call().getRepository();
+		try {
+			ObjectId root = commit(repository, 100, "Initial commit");
+			ObjectId[] parents = new ObjectId[300];
+			for(int i = 0; i < parents.length; i++) parents[i] = commit(repository, 200 + i, "Branch " + i, root);
+			setHead(repository, commit(repository, 1000, "Octopus merge", parents));
+
+			CommitIndex built = CommitIndex.open(repository);
+			assertEquals(300, built.getEntries().get(0).parents.length);
+			assertSameIndex(built, CommitIndex.open(repository));
+		}
+		finally {
+			repository.close();
+			FileUtils.delete(base, FileUtils.RECURSIVE | FileUtils.RETRY);
+		}
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws Exception {
+		File base = Files.createTempDirectory("index").toFile();
+		Repository repository = Git.init().setBare(true).setDirectory(base).call().getRepository();
+		try {
+			ObjectId first = commit(repository, 100, "Initial commit");
+			ObjectId second = commit(repository, 200, "Fix a bug", first);
+			setHead(repository, second);
+			CommitIndex.open(repository);
+
+			/* Merge a branch with a commit that is older than the old HEAD, so
+			 * the walk visits it between the old commits. */
+			ObjectId branch = commit(repository, 150, "Repair on a branch", first);
+			ObjectId merge = commit(repository, 300, "Merge branch", second, branch);
+			setHead(repository, merge);
+			CommitIndex updated = CommitIndex.open(repository);
+
+			List<ObjectId> order = new LinkedList<ObjectId>();
+			for(CommitIndex.Entry entry : updated.getEntries()) order.add(entry.id);
+			List<ObjectId> expected = new LinkedList<ObjectId>();
+			expected.add(merge);
+			expected.add(second);
+			expected.add(branch);
+			expected.add(first);
+			assertEquals(expected, order);
+
+			/* The updated index is the same as a rebuilt index. */
+			Files.delete(repository.getDirectory().toPath().resolve(CommitIndex.FILE_NAME));
+			assertSameIndex(CommitIndex.open(repository), updated);
+		}
+		finally {
+			repository.close();
+			FileUtils.delete(base, FileUtils.RECURSIVE | FileUtils.RETRY);
+		}
+	}
+
+	@Test
+	public void testFallbackEquivalence() throws Exception {
+		File base = Files.createTempDirectory("index").toFile();
+		Repository repository = Git.init().setBare(true).setDirectory(base).call().getRepository();
+		try {
+			ObjectId first = commit(repository, 100, "Initial commit");
+			ObjectId second = commit(repository, 200, "Fix a bug", first);
+			ObjectId branch = commit(repository, 150, "Repair on a branch", first);
+			ObjectId third = commit(repository, 250, "Add a feature", second);
+			ObjectId merge = commit(repository, 300, "Merge branch", third, branch);
+			setHead(repository, merge);
+
+			List<Object> walked = read(new CommitPairSource(repository, 0));
+			List<Object> indexed = read(new CommitPairSource(CommitIndex.open(repository), 0));
+			assertEquals(walked, indexed);
+			assertEquals(Triple.of(third.name(), merge.name(), Type.MERGE), indexed.get(0));
+		}
+		finally {
+			repository.close();
+			FileUtils.delete(base, FileUtils.RECURSIVE | FileUtils.RETRY);
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+package commitminer.test.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.util.FileUtils;
+import org.junit.Test;
+
+import commitminer.git.GitProject;
+import commitminer.git.RepositoryAcquirer;
+
+public class TestRepositoryAcquirer extends TestCase {
+
+	/**
+	 * Creates a repository with one commit that can be cloned with a
+	 * {@code file://} URI.
+	 * @return The URI of the repository.
+	 */
+	protected String createRemote(File base, String name) throws Exception {
+		File directory = new File(base, name + ".git");
+		Git git = Git.init().setDirectory(directory).call();
+		Files.write(new File(directory, "index.js").toPath(), "var a = 1;\n".getBytes());
+		git.add().addFilepattern("index.js").call();
+		git.commit().setMessage("Initial commit").setAuthor("Test", "test@example.com").call();
+		git.getRepository().close();
+		return "file://" + directory.getAbsolutePath();
+	}
+
+	/**
+	 * Acquires the URIs and waits for the acquisitions to finish.
+	 * @return The acquired projects, followed by the URIs that failed.
+	 */
+	protected List<Object> runTest(File checkout, List<String> uris) throws InterruptedException {
+
+		final List<Object> results = new LinkedList<Object>();
+
+		RepositoryAcquirer acquirer = new RepositoryAcquirer(checkout.getPath(), 2);
+		for(String uri : uris) {
+			acquirer.acquire(uri, new RepositoryAcquirer.Listener() {
+				@Override
+				public void acquired(GitProject project) {
+					synchronized(results) { results.add(0, project); }
+				}
+
+				@Override
+				public void failed(String uri, Exception e) {
+					synchronized(results) { results.add(uri); }
+				}
+			});
+		}
+		acquirer.close();
+
+		return results;
+
+	}
+
+	@Test
+	public void testCloneAndPull() throws Exception {
+		File base = Files.createTempDirectory("acquirer").toFile();
+		try {
+			File checkout = new File(base, "repositories");
+			List<String> uris = new LinkedList<String>();
+			uris.add(createRemote(base, "first"));
+			uris.add(createRemote(base, "second"));
+
+			/* Clone the repositories. */
+			List<Object> results = runTest(checkout, uris);
+			assertEquals(2, results.size());
+			for(Object result : results) {
+				assertTrue(result instanceof GitProject);
+				assertEquals(Integer.valueOf(1), ((GitProject)result).getTotalCommits());
+			}
+
+			/* The repositories exist, so they are pulled. */
+			results = runTest(checkout, uris);
+			assertEquals(2, results.size());
+			for(Object result : results) assertTrue(result instanceof GitProject);
+		}
+		finally {
+			delete(base);
+		}
+	}
+
+	@Test
+	public void testSharedDirectory() throws Exception {
+		File base = Files.createTempDirectory("acquirer").toFile();
+		try {
+			File checkout = new File(base, "repositories");
+			String first = createRemote(new File(base, "a"), "project");
+			String second = createRemote(new File(base, "b"), "project");
+
+			/* The same URI twice: one acquisition clones, the other pulls. */
+			List<String> uris = new LinkedList<String>();
+			uris.add(first);
+			uris.add(first);
+			List<Object> results = runTest(checkout, uris);
+			assertEquals(2, results.size());
+			for(Object result : results) {
+				assertTrue(result instanceof GitProject);
+				assertEquals(Integer.valueOf(1), ((GitProject)result).getTotalCommits());
+			}
+
+			/* A fork with the same name has its own checkout directory. */
+			uris = new LinkedList<String>();
+			uris.add(first);
+			uris.add(second);
+			uris.add(first);
+			results = runTest(checkout, uris);
+			assertEquals(3, results.size());
+			List<String> names = new LinkedList<String>();
+			for(Object result : results) {
+				assertTrue(result instanceof GitProject);
+				assertEquals(Integer.valueOf(1), ((GitProject)result).getTotalCommits());
+				names.add(((GitProject)result).getName());
+			}
+			assertTrue(names.contains("a/project"));
+			assertTrue(names.contains("b/project"));
+		}
+		finally {
+			delete(base);
+		}
+	}
+
+	@Test
+	public void testMissingRemote() throws Exception {
+		File base = Files.createTempDirectory("acquirer").toFile();
+		try {
+			File checkout = new File(base, "repositories");
+			List<String> uris = new LinkedList<String>();
+			uris.add("file://" + new File(base, "missing.git").getAbsolutePath());
+
+			List<Object> results = runTest(checkout, uris);
+			assertEquals(uris, results);
+		}
+		finally {
+			delete(base);
+		}
+	}
+
+	private static void delete(File file) throws IOException {
+		FileUtils.delete(file, FileUtils.RECURSIVE | FileUtils.RETRY);
+	}
+
+}
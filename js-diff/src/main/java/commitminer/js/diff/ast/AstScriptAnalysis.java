@@ -12,8 +12,10 @@ import org.deri.iris.storage.simple.SimpleRelationFactory;
 import org.mozilla.javascript.ast.AstNode;
 import org.mozilla.javascript.ast.AstRoot;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.SourceCodeFileAnalysis;
 import commitminer.analysis.SourceCodeFileChange;
+import commitminer.cfd.LazyCFGs;
 import commitminer.cfg.CFG;
 import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode;
 
@@ -33,7 +35,15 @@ public class AstScriptAnalysis extends SourceCodeFileAnalysis {
 	@Override
 	public void analyze(SourceCodeFileChange sourceCodeFileChange,
 			Map<IPredicate, IRelation> facts, ClassifiedASTNode root,
-			List<CFG> cfgs) throws Exception {
+			List<CFG> cfgs, LazyCFGs lazyCFGs, AnalysisContext context) throws Exception {
+		/* The analysis only needs the AST, so the CFGs are not built. */
+		this.analyze(sourceCodeFileChange, facts, root, cfgs, context);
+	}
+
+	@Override
+	public void analyze(SourceCodeFileChange sourceCodeFileChange,
+			Map<IPredicate, IRelation> facts, ClassifiedASTNode root,
+			List<CFG> cfgs, AnalysisContext context) throws Exception {
 
 		/* Check we are working with the correct AST type. */
 		if(!(root instanceof AstRoot)) throw new IllegalArgumentException("The AST must be parsed from Eclipse JDT.");
@@ -5,8 +5,8 @@ import java.util.Map;
 import org.deri.iris.api.basics.IPredicate;
 import org.deri.iris.storage.IRelation;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.SourceCodeFileChange;
-import commitminer.analysis.annotation.AnnotationFactBase;
 import commitminer.cfg.ICFGVisitor;
 import commitminer.cfg.ICFGVisitorFactory;
 
@@ -14,8 +14,8 @@ public class ControlConditionCFGVisitorFactory implements ICFGVisitorFactory {
 
 	@Override
 	public ICFGVisitor newInstance(SourceCodeFileChange sourceCodeFileChange,
-			Map<IPredicate, IRelation> facts) {
-		return new ControlConditionCFGVisitor(AnnotationFactBase.getInstance(sourceCodeFileChange));
+			Map<IPredicate, IRelation> facts, AnalysisContext context) {
+		return new ControlConditionCFGVisitor(context.getAnnotationFactBase(sourceCodeFileChange));
 	}
 
 }
@@ -10,6 +10,7 @@ import org.apache.commons.io.FileUtils;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.Commit;
 import commitminer.analysis.CommitAnalysis;
 import commitminer.analysis.SourceCodeFileChange;
@@ -75,7 +76,8 @@ public class MultiDiff {
 	protected void diff(SourceCodeFileChange sourceFileChange) throws Exception {
 
 		/* Set the options for this run. */
-		Options.createInstance(Options.DiffMethod.GUMTREE, Options.ChangeImpact.DEPENDENCIES);
+		AnalysisContext context = new AnalysisContext(
+				new Options(Options.DiffMethod.GUMTREE, Options.ChangeImpact.DEPENDENCIES));
 
 		/* Read the source files. */
 		String srcCode = new String(Files.readAllBytes(Paths.get(options.getOriginal())));
@@ -86,14 +88,14 @@ public class MultiDiff {
 		commit.addSourceCodeFileChange(sourceFileChange);
 
 		/* Builds the data set with our custom queries. */
-		AnnotationFactBase factBase = AnnotationFactBase.getInstance(sourceFileChange);
+		AnnotationFactBase factBase = context.getAnnotationFactBase(sourceFileChange);
 
 		/* Set up the analysis. */
 		ICommitAnalysisFactory commitFactory = new DiffCommitAnalysisFactory();
 		CommitAnalysis commitAnalysis = commitFactory.newInstance();
 
 		/* Run the analysis. */
-		commitAnalysis.analyze(commit);
+		commitAnalysis.analyze(commit, context);
 
         /* Print the data set. */
 		factBase.printDataSet();
@@ -1,7 +1,12 @@
 package multidiff;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.text.ParseException;
+import java.util.LinkedList;
+import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.kohsuke.args4j.CmdLineException;
@@ -13,7 +18,15 @@ import commitminer.analysis.Commit.Type;
 import commitminer.analysis.annotation.AnnotationMetricsPostprocessor;
 import commitminer.analysis.factories.ICommitAnalysisFactory;
 import commitminer.analysis.options.Options;
+import commitminer.batch.AnalysisMemo;
+import commitminer.batch.CommitRegistry;
+import commitminer.batch.CommitSampler;
 import commitminer.batch.GitProjectAnalysis;
+import commitminer.batch.ScreeningPolicy;
+import commitminer.cfd.MatchPolicy;
+import commitminer.cfd.ParseCache;
+import commitminer.git.HistoryFilter;
+import commitminer.git.PackCacheConfig;
 import commitminer.js.diff.factories.CommitAnalysisFactoryAnnotationMetrics;
 
 public class MultiDiffBatch {
@@ -46,28 +59,160 @@ public class MultiDiffBatch {
 		/* The metrics post-processor. */
 		AnnotationMetricsPostprocessor postProc = new AnnotationMetricsPostprocessor(options.getOutputFile());
 		try {
-			postProc.writeHeader();
+			/* When resuming, the rows from the earlier run are kept. */
+			if(!options.getResume() || !new File(options.getOutputFile()).exists())
+				postProc.writeHeader();
 		} catch (IOException e1) {
 			System.err.println("MultiDiffBatch::main -- Could not write to output file.");
 			return;
 		}
 
-		/* Set the options for this run. */
-		Options.createInstance(options.getDiffMethod(), options.getChangeImpact());
-		
-		GitProjectAnalysis gitProjectAnalysis;
+		/* Size JGit's pack caches before any repository is opened. */
+		PackCacheConfig.configure(options.getPackedGitLimit(), options.getPackedGitWindowSize(),
+								  options.getDeltaBaseCacheLimit(), options.getPackedGitOpenFiles());
+
+		/* Limit the history to analyze. */
+		HistoryFilter historyFilter;
 		try {
+			historyFilter = HistoryFilter.fromStrings(options.getSince(), options.getUntil(),
+													  options.getAuthors(), options.getPaths());
+		} catch (ParseException e) {
+			MultiDiffBatch.printUsage("Dates must be in " + HistoryFilter.DATE_FORMAT + " format.", parser);
+			return;
+		}
+
+		/* The thresholds for escalating a file change to the flow analysis. */
+		ScreeningPolicy screeningPolicy = null;
+		if(options.getScreen() != null) {
+			try {
+				screeningPolicy = ScreeningPolicy.fromString(options.getScreen());
+			} catch (IllegalArgumentException e) {
+				MultiDiffBatch.printUsage(e.getMessage(), parser);
+				return;
+			}
+		}
+
+		/* How to match the ASTs of large files. */
+		MatchPolicy matchPolicy = null;
+		if(options.getMatchPolicy() != null) {
+			try {
+				matchPolicy = MatchPolicy.fromString(options.getMatchPolicy());
+			} catch (IllegalArgumentException e) {
+				MultiDiffBatch.printUsage(e.getMessage(), parser);
+				return;
+			}
+		}
+
+		/* The number of threads for each stage of the pipeline. */
+		int[] pipeline = null;
+		if(options.getPipeline() != null) {
+			String[] threads = options.getPipeline().split(",");
+			if(threads.length != 4) {
+				MultiDiffBatch.printUsage("The pipeline needs four thread counts (fetch,difference,flow,post-process).", parser);
+				return;
+			}
+			pipeline = new int[4];
+			for(int i = 0; i < 4; i++) {
+				try {
+					pipeline[i] = Integer.parseInt(threads[i].trim());
+				} catch (NumberFormatException e) {
+					pipeline[i] = 0;
+				}
+				if(pipeline[i] < 1) {
+					MultiDiffBatch.printUsage("Pipeline thread counts must be positive integers: " + options.getPipeline(), parser);
+					return;
+				}
+			}
+		}
+
+		/* The projects to analyze. */
+		List<String> uris = new LinkedList<String>();
+		if(options.getURI() != null) uris.add(options.getURI());
+		if(options.getRepoFile() != null) {
+			try(BufferedReader br = new BufferedReader(new FileReader(options.getRepoFile()))) {
+				for(String line; (line = br.readLine()) != null; ) {
+					if(!line.trim().isEmpty()) uris.add(line.trim());
+				}
+			}
+			catch(IOException e) {
+				MultiDiffBatch.printUsage("Could not read the repository file: " + e.getMessage(), parser);
+				return;
+			}
+		}
+		if(uris.isEmpty()) {
+			MultiDiffBatch.printUsage("No repository given (-u or -rf).", parser);
+			return;
+		}
 
-			/* Checkout or pull the project. */
-            gitProjectAnalysis = GitProjectAnalysis.fromURI(options.getURI(),
-            		CHECKOUT_DIR, postProc, analysisFactory);
-            
-            /* Run the analysis on the project history. */
-			gitProjectAnalysis.analyze();
+		/* Forks share most of their history, so each commit is analyzed by
+		 * the first project that reaches it. */
+		CommitRegistry registry = options.getDeduplicate()
+				? new CommitRegistry(options.getDuplicates()) : null;
+
+		/* Parse each version of a file once. The cache is shared by the
+		 * projects, since forks share most of their files. */
+		ParseCache parseCache = options.getParseCache() > 0
+				? new ParseCache(options.getParseCache() * 1024L * 1024L) : null;
+
+		/* Replay the results of file changes we have already analyzed. */
+		AnalysisMemo memo = null;
+		if(options.getMemoDirectory() != null) {
+			try {
+				memo = new AnalysisMemo(options.getMemoDirectory());
+			} catch (IOException e) {
+				System.err.println("MultiDiffBatch::main -- Could not open the memo directory.");
+				return;
+			}
+		}
+
+		/* The projects are analyzed one at a time and write to the same
+		 * output file. */
+		for(String uri : uris) {
+
+			GitProjectAnalysis gitProjectAnalysis;
+			try {
+
+				/* Checkout or pull the project. */
+				gitProjectAnalysis = GitProjectAnalysis.fromURI(uri,
+						CHECKOUT_DIR, postProc, analysisFactory);
+				gitProjectAnalysis.setNThreads(options.getNThreads());
+				gitProjectAnalysis.setCommitLimit(options.getCommitLimit());
+				gitProjectAnalysis.setResume(options.getResume());
+				gitProjectAnalysis.setLocalityOrder(options.getLocality());
+				gitProjectAnalysis.setUseCommitIndex(!options.getNoCommitIndex());
+				gitProjectAnalysis.setHistoryFilter(historyFilter);
+				gitProjectAnalysis.setScreeningPolicy(screeningPolicy);
+				gitProjectAnalysis.setMatchPolicy(matchPolicy);
+				gitProjectAnalysis.setChangeScoped(options.getChangeScoped());
+				gitProjectAnalysis.setParallelFunctions(options.getParallelFunctions());
+				gitProjectAnalysis.setParseCache(parseCache);
+				gitProjectAnalysis.setCommitRegistry(registry);
+				gitProjectAnalysis.setAnalysisMemo(memo);
+
+				/* Analyze a sample of the commits for a quick estimate. */
+				if(options.getSample() != null)
+					gitProjectAnalysis.setSampler(new CommitSampler(options.getSample(),
+							options.getSampleRate(), options.getSampleSize(), options.getSeed()));
+
+				/* Run the stages of the analysis on separate threads. */
+				if(pipeline != null)
+					gitProjectAnalysis.setPipeline(pipeline[0], pipeline[1], pipeline[2], pipeline[3]);
+
+				/* Set the options for this run. */
+				gitProjectAnalysis.setOptions(new Options(options.getDiffMethod(), options.getChangeImpact()));
+
+				/* Run the analysis on the project history. */
+				gitProjectAnalysis.analyze();
+
+			} catch (Exception e) {
+				System.err.println("MultiDiffBatch::main -- Project " + uri + " threw an exception.");
+				e.printStackTrace(System.err);
+			}
+
+		}
 
-		} catch (Exception e) {
-			e.printStackTrace(System.err);
-		}	
+		if(registry != null)
+			System.out.println("[DEDUPLICATE] " + registry.size() + " distinct commits, " + registry.getHits() + " shared commits not analyzed again");
 
 	}
 	
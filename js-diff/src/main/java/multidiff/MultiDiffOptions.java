@@ -3,6 +3,9 @@ package multidiff;
 import org.kohsuke.args4j.Option;
 
 import commitminer.analysis.options.Options;
+import commitminer.batch.CommitRegistry;
+import commitminer.batch.CommitSampler;
+import commitminer.cfd.ParseCache;
 
 public class MultiDiffOptions {
 
@@ -16,19 +19,96 @@ public class MultiDiffOptions {
 	private String modified = null;
 	
 	@Option(name="-u", aliases={"--uri"}, 
-			usage="The uri of the public repository (e.g., https://github.com/qhanam/JSRepairClass.git).", 
-			required=true)
+			usage="The uri of the public repository (e.g., https://github.com/qhanam/JSRepairClass.git).")
 	private String host = null;
+
+	@Option(name="-rf", aliases={"--repositories"}, usage="The path to a file with the uris of the repositories to analyze (one per line). The rows of every repository are written to the same output file.")
+	private String repoFile = null;
+
+	@Option(name = "-dd", aliases = { "--deduplicate" }, usage = "Analyze a commit that is shared by several repositories (e.g., forks) only once.")
+	private boolean deduplicate = false;
+
+	@Option(name = "-dup", aliases = { "--duplicates" }, usage = "With --deduplicate, what to write for a commit analyzed by another repository: EMIT (the same rows, attributed to each repository) or SUPPRESS (nothing).")
+	private CommitRegistry.Duplicates duplicates = CommitRegistry.Duplicates.EMIT;
 	
-	@Option(name = "-tr", aliases = { "--threads" }, usage = "The number of threads to be used.")
+	@Option(name = "-tr", aliases = { "--threads" }, usage = "The number of commits to analyze concurrently.")
 	private Integer nThreads = 1;
+
+	@Option(name = "-n", aliases = { "--commits" }, usage = "The maximum number of commits to analyze, starting with the most recent commit (0 for all commits).")
+	private Integer commitLimit = 0;
 	
+	@Option(name = "-p", aliases = { "--pipeline" }, usage = "Run the analysis as a staged pipeline with the given number of threads for the fetch, difference, flow and post-process stages (e.g., 2,4,8,1).")
+	private String pipeline = null;
+
 	@Option(name = "-d", aliases={"--diff"}, usage="The diff method (GUMTREE|MEYERS)")
 	private Options.DiffMethod diffMethod = Options.DiffMethod.GUMTREE;
 	
 	@Option(name = "-ci", aliases={"--changeimpact"}, usage="The change impact method (MULTIDIFF|DEPENDENCIES).")
 	private Options.ChangeImpact changeImpact = Options.ChangeImpact.MULTIDIFF;
 
+	@Option(name = "-memo", aliases={"--memo"}, usage="The directory that stores analysis results for blob pairs, so that repeated file changes are only analyzed once.")
+	private String memoDirectory = null;
+
+	@Option(name = "-r", aliases={"--resume"}, usage="Skip the commits that were analyzed by an earlier run and append to the output file.")
+	private boolean resume = false;
+
+	@Option(name = "-lo", aliases={"--locality"}, usage="Analyze each commit just before its first parent where possible, instead of in history order, so that consecutive commits read nearby blobs.")
+	private boolean locality = false;
+
+	@Option(name = "-nci", aliases={"--no-commit-index"}, usage="Walk the history with JGit instead of reading it from the commit index in the project's .git directory.")
+	private boolean noCommitIndex = false;
+
+	@Option(name = "-pgl", aliases={"--packed-git-limit"}, usage="The size of JGit's pack window cache (in MB).")
+	private Integer packedGitLimit = 0;
+
+	@Option(name = "-pgw", aliases={"--packed-git-window"}, usage="The size of one pack window (in KB, a power of two).")
+	private Integer packedGitWindowSize = 0;
+
+	@Option(name = "-dbc", aliases={"--delta-base-cache"}, usage="The size of JGit's delta base cache (in MB).")
+	private Integer deltaBaseCacheLimit = 0;
+
+	@Option(name = "-pgo", aliases={"--packed-git-open-files"}, usage="The number of pack files JGit keeps open.")
+	private Integer packedGitOpenFiles = 0;
+
+	@Option(name = "-since", aliases={"--since"}, usage="Only analyze commits made on or after this date (yyyy-MM-dd).")
+	private String since = null;
+
+	@Option(name = "-until", aliases={"--until"}, usage="Only analyze commits made on or before this date (yyyy-MM-dd).")
+	private String until = null;
+
+	@Option(name = "-au", aliases={"--authors"}, usage="Only analyze commits by these authors (comma separated names or emails).")
+	private String authors = null;
+
+	@Option(name = "-pa", aliases={"--paths"}, usage="Only analyze commits and files under these directories (comma separated, relative to the repository root).")
+	private String paths = null;
+
+	@Option(name = "-sm", aliases={"--sample"}, usage="Only analyze a random sample of the commits and estimate the metrics of the project (UNIFORM|STRATIFIED|CAPPED).")
+	private CommitSampler.Strategy sample = null;
+
+	@Option(name = "-sr", aliases={"--sample-rate"}, usage="The fraction of the commits in a UNIFORM sample.")
+	private Double sampleRate = 0.1;
+
+	@Option(name = "-ss", aliases={"--sample-size"}, usage="The number of commits of each type in a STRATIFIED sample, or of the project in a CAPPED sample.")
+	private Integer sampleSize = 100;
+
+	@Option(name = "-seed", aliases={"--seed"}, usage="The seed for the sample. The same seed selects the same commits.")
+	private Long seed = 0L;
+
+	@Option(name = "-sc", aliases={"--screen"}, usage="Only flow analyze the file changes that pass these thresholds (e.g., lines=1:2000,statements=1:300,types=BUG_FIX+OTHER). The tier of each file is written to the output.")
+	private String screen = null;
+
+	@Option(name = "-pc", aliases={"--parse-cache"}, usage="The estimated heap used to keep parsed files, so that each version of a file is parsed once (in MB, zero to parse every file).")
+	private Integer parseCache = (int)(ParseCache.DEFAULT_CAPACITY / (1024 * 1024));
+
+	@Option(name = "-mp", aliases={"--match-policy"}, usage="Match the ASTs of large files with a cheaper strategy, by AST node count (e.g., topdown=20000,lines=100000), or match every file with one strategy (e.g., strategy=TOPDOWN). The strategy used for each file is written to the output.")
+	private String matchPolicy = null;
+
+	@Option(name = "-cs", aliases={"--change-scoped"}, usage="Only build the CFGs of changed functions and the functions the flow analysis reaches from them.")
+	private boolean changeScoped = false;
+
+	@Option(name = "-pf", aliases={"--parallel-functions"}, usage="Build the CFGs of each function in a file concurrently.")
+	private boolean parallelFunctions = false;
+
 	@Option(name="-h", aliases={"--help"}, usage="Display the help file.")
 	private boolean help = false;
 	
@@ -36,10 +116,36 @@ public class MultiDiffOptions {
 	public String getOriginal() { return original; }
 	public String getModified() { return modified; }
 	public String getURI() { return host; }
+	public String getRepoFile() { return repoFile; }
+	public boolean getDeduplicate() { return deduplicate; }
+	public CommitRegistry.Duplicates getDuplicates() { return duplicates; }
 	public Integer getNThreads() { return nThreads; }
+	public Integer getCommitLimit() { return commitLimit; }
+	public String getPipeline() { return pipeline; }
 	public Options.DiffMethod getDiffMethod() { return diffMethod; }
 
 	public Options.ChangeImpact getChangeImpact() { return changeImpact; }
+	public String getMemoDirectory() { return memoDirectory; }
+	public boolean getResume() { return resume; }
+	public boolean getLocality() { return locality; }
+	public boolean getNoCommitIndex() { return noCommitIndex; }
+	public Integer getPackedGitLimit() { return packedGitLimit; }
+	public Integer getPackedGitWindowSize() { return packedGitWindowSize; }
+	public Integer getDeltaBaseCacheLimit() { return deltaBaseCacheLimit; }
+	public Integer getPackedGitOpenFiles() { return packedGitOpenFiles; }
+	public String getSince() { return since; }
+	public String getUntil() { return until; }
+	public String getAuthors() { return authors; }
+	public String getPaths() { return paths; }
+	public CommitSampler.Strategy getSample() { return sample; }
+	public Double getSampleRate() { return sampleRate; }
+	public Integer getSampleSize() { return sampleSize; }
+	public Long getSeed() { return seed; }
+	public String getScreen() { return screen; }
+	public Integer getParseCache() { return parseCache; }
+	public String getMatchPolicy() { return matchPolicy; }
+	public boolean getChangeScoped() { return changeScoped; }
+	public boolean getParallelFunctions() { return parallelFunctions; }
 	
 	public boolean getHelp() {
 		return help;
@@ -0,0 +1,120 @@
+package commitminer.js.batch;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.util.FileUtils;
+import org.junit.Test;
+
+import commitminer.analysis.annotation.AnnotationMetricsPostprocessor;
+import commitminer.analysis.options.Options;
+import commitminer.batch.CommitRegistry;
+import commitminer.batch.GitProjectAnalysis;
+import commitminer.js.diff.factories.CommitAnalysisFactoryAnnotationMetrics;
+
+public class TestForkDeduplication extends TestCase {
+
+	/**
+	 * Creates a project with a bug fixing commit, and two forks of the
+	 * project that have the same name but different owners.
+	 * @return The {@code file://} URIs of the forks.
+	 */
+	protected List<String> createForks(File base) throws Exception {
+
+		File upstream = new File(base, "upstream/project.git");
+		Git git = Git.init().setDirectory(upstream).call();
+
+		Files.write(new File(upstream, "index.js").toPath(),
+				"function f(a) {\n\treturn a.b;\n}\n".getBytes());
+		git.add().addFilepattern("index.js").call();
+		git.commit().setMessage("Initial commit").setAuthor("Test", "test@example.com").call();
+
+		Files.write(new File(upstream, "index.js").toPath(),
+				"function f(a) {\n\tif(a === undefined) return null;\n\treturn a.b;\n}\n".getBytes());
+		git.add().addFilepattern("index.js").call();
+		git.commit().setMessage("Fix a crash when a is undefined").setAuthor("Test", "test@example.com").call();
+		git.getRepository().close();
+
+		List<String> uris = new LinkedList<String>();
+		for(String owner : new String[] { "a", "b" }) {
+			File fork = new File(base, owner + "/project.git");
+			Git.cloneRepository().setURI("file://" + upstream.getAbsolutePath())
+					.setDirectory(fork).call().getRepository().close();
+			uris.add("file://" + fork.getAbsolutePath());
+		}
+		return uris;
+
+	}
+
+	/**
+	 * Analyzes the forks one after the other with a shared registry.
+	 * @return The rows of the output file (without the header).
+	 */
+	protected List<String> runTest(File base, List<String> uris, CommitRegistry.Duplicates duplicates) throws Exception {
+
+		File out = new File(base, duplicates + ".csv");
+		AnnotationMetricsPostprocessor postProc = new AnnotationMetricsPostprocessor(out.getPath());
+		postProc.writeHeader();
+
+		CommitRegistry registry = new CommitRegistry(duplicates);
+		for(String uri : uris) {
+			GitProjectAnalysis analysis = GitProjectAnalysis.fromURI(uri,
+					new File(base, "repositories").getPath(), postProc,
+					new CommitAnalysisFactoryAnnotationMetrics(Options.ChangeImpact.MULTIDIFF));
+			analysis.setOptions(new Options(Options.DiffMethod.GUMTREE, Options.ChangeImpact.MULTIDIFF));
+			analysis.setCommitRegistry(registry);
+			analysis.analyze();
+		}
+
+		/* The fix is analyzed by the first fork only. */
+		assertEquals(1, registry.size());
+		assertEquals(1, registry.getHits());
+
+		List<String> rows = Files.readAllLines(out.toPath());
+		return rows.subList(1, rows.size());
+
+	}
+
+	/**
+	 * @return The rows that are attributed to a project.
+	 */
+	protected List<String> getRows(List<String> rows, String projectID) {
+		List<String> projectRows = new LinkedList<String>();
+		for(String row : rows) {
+			if(row.startsWith("'" + projectID + "'")) projectRows.add(row.substring(row.indexOf(", '")));
+		}
+		return projectRows;
+	}
+
+	@Test
+	public void testForks() throws Exception {
+		File base = Files.createTempDirectory("forks").toFile();
+		try {
+			List<String> uris = createForks(base);
+
+			/* Each fork gets the rows of the shared commit. */
+			List<String> rows = runTest(base, uris, CommitRegistry.Duplicates.EMIT);
+			List<String> first = getRows(rows, "a/project");
+			List<String> second = getRows(rows, "b/project");
+			assertFalse(first.isEmpty());
+			assertEquals(first, second);
+			assertEquals(first.size() + second.size(), rows.size());
+
+			/* Only the fork that analyzed the shared commit gets its rows. The
+			 * commit is analyzed again, so the runtimes may differ. */
+			rows = runTest(base, uris, CommitRegistry.Duplicates.SUPPRESS);
+			assertEquals(first.size(), getRows(rows, "a/project").size());
+			assertTrue(getRows(rows, "b/project").isEmpty());
+			assertEquals(first.size(), rows.size());
+		}
+		finally {
+			FileUtils.delete(base, FileUtils.RECURSIVE | FileUtils.RETRY);
+		}
+	}
+
+}
@@ -10,6 +10,7 @@ import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.Commit;
 import commitminer.analysis.CommitAnalysis;
 import commitminer.analysis.SourceCodeFileChange;
@@ -33,15 +34,15 @@ public class EvalUserDiffAnalysis {
 		Commit commit = getCommit();
 		commit.addSourceCodeFileChange(sourceFileChange);
 
-		/* Builds the data set with our custom queries. */
-		AnnotationFactBase factBase = AnnotationFactBase.getInstance(sourceFileChange);
-
 		/* Set up the analysis. */
 		ICommitAnalysisFactory commitFactory = new DiffCommitAnalysisFactory();
 		CommitAnalysis commitAnalysis = commitFactory.newInstance();
 
 		/* Run the analysis. */
-		commitAnalysis.analyze(commit);
+		AnalysisContext context = commitAnalysis.analyze(commit);
+
+		/* Builds the data set with our custom queries. */
+		AnnotationFactBase factBase = context.getAnnotationFactBase(sourceFileChange);
 
         /* Print the data set. */
 		factBase.printDataSet();
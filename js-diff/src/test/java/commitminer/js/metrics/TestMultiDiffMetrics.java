@@ -6,6 +6,7 @@ import java.io.IOException;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.Commit;
 import commitminer.analysis.CommitAnalysis;
 import commitminer.analysis.SourceCodeFileChange;
@@ -30,9 +31,6 @@ public class TestMultiDiffMetrics {
 		AnnotationFactBase gumtreeFactBase;
 		AnnotationFactBase meyersFactBase;
 
-		/* Set the options for this run. */
-		Options options = Options.createInstance(Options.DiffMethod.GUMTREE, Options.ChangeImpact.DEPENDENCIES);
-
 		/* Read the source files. */
 		SourceCodeFileChange sourceCodeFileChange = getSourceCodeFileChange(src, dst);
 
@@ -45,15 +43,16 @@ public class TestMultiDiffMetrics {
 		CommitAnalysis commitAnalysis = commitFactory.newInstance();
 
 		/* Run the meyers analysis. */
-		options.setDiffMethod(Options.DiffMethod.MEYERS);
-		commitAnalysis.analyze(commit);
-		meyersFactBase = AnnotationFactBase.getInstance(sourceCodeFileChange);
+		AnalysisContext meyersContext = new AnalysisContext(
+				new Options(Options.DiffMethod.MEYERS, Options.ChangeImpact.DEPENDENCIES));
+		commitAnalysis.analyze(commit, meyersContext);
+		meyersFactBase = meyersContext.getAnnotationFactBase(sourceCodeFileChange);
 
 		/* Run the gumtree analysis. */
-		AnnotationFactBase.removeInstance(sourceCodeFileChange);
-		options.setDiffMethod(Options.DiffMethod.GUMTREE);
-		commitAnalysis.analyze(commit);
-		gumtreeFactBase = AnnotationFactBase.getInstance(sourceCodeFileChange);
+		AnalysisContext gumtreeContext = new AnalysisContext(
+				new Options(Options.DiffMethod.GUMTREE, Options.ChangeImpact.DEPENDENCIES));
+		commitAnalysis.analyze(commit, gumtreeContext);
+		gumtreeFactBase = gumtreeContext.getAnnotationFactBase(sourceCodeFileChange);
 
 		/* Write metrics to a file. */
 		AnnotationMetricsPostprocessor postProc = new AnnotationMetricsPostprocessor(out);
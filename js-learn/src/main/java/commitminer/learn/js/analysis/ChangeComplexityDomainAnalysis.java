@@ -9,6 +9,7 @@ import org.deri.iris.storage.IRelation;
 import org.deri.iris.storage.IRelationFactory;
 import org.deri.iris.storage.simple.SimpleRelationFactory;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.Commit;
 import commitminer.analysis.DomainAnalysis;
 import commitminer.analysis.SourceCodeFileChange;
@@ -23,7 +24,7 @@ public class ChangeComplexityDomainAnalysis extends DomainAnalysis {
 	}
 
 	@Override
-	public void analyze(Commit commit, Map<IPredicate, IRelation> facts) throws Exception {
+	public void analyze(Commit commit, Map<IPredicate, IRelation> facts, AnalysisContext context) throws Exception {
 
 		ChangeComplexitySCFA srcComplexity = (ChangeComplexitySCFA)this.srcAnalysisFactory.newInstance();
 		ChangeComplexitySCFA dstComplexity = (ChangeComplexitySCFA)this.srcAnalysisFactory.newInstance();
@@ -40,7 +41,7 @@ public class ChangeComplexityDomainAnalysis extends DomainAnalysis {
 			/* Compute the change complexity for this file.
 			 * NOTE: If an exception occurs while analyzing the file, no results
 			 * 		 will be returned and the complexity will not be correct. */
-			this.analyzeFile(sourceCodeFileChange, facts);
+			this.analyzeFile(sourceCodeFileChange, facts, context);
 
 			/* Update the total change complexity. */
 			if(srcComplexity.getChangeComplexity() != null) {
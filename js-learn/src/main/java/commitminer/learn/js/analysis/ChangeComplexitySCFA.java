@@ -8,10 +8,13 @@ import org.deri.iris.storage.IRelation;
 import org.mozilla.javascript.ast.AstRoot;
 
 import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode;
+import commitminer.analysis.AnalysisContext;
+import commitminer.analysis.ChangeComplexityVisitor;
+import commitminer.analysis.ChangeComplexityVisitor.ChangeComplexity;
 import commitminer.analysis.SourceCodeFileAnalysis;
 import commitminer.analysis.SourceCodeFileChange;
+import commitminer.cfd.LazyCFGs;
 import commitminer.cfg.CFG;
-import commitminer.learn.js.analysis.ChangeComplexityVisitor.ChangeComplexity;
 
 /**
  * Computes the change complexity (number of modified statements) for a source
@@ -48,7 +51,15 @@ public class ChangeComplexitySCFA extends SourceCodeFileAnalysis {
 	@Override
 	public void analyze(SourceCodeFileChange sourceCodeFileChange,
 			Map<IPredicate, IRelation> facts, ClassifiedASTNode root,
-			List<CFG> cfgs) throws Exception {
+			List<CFG> cfgs, LazyCFGs lazyCFGs, AnalysisContext context) throws Exception {
+		/* The analysis only needs the AST, so the CFGs are not built. */
+		this.analyze(sourceCodeFileChange, facts, root, cfgs, context);
+	}
+
+	@Override
+	public void analyze(SourceCodeFileChange sourceCodeFileChange,
+			Map<IPredicate, IRelation> facts, ClassifiedASTNode root,
+			List<CFG> cfgs, AnalysisContext context) throws Exception {
 
 		this.complexity = ChangeComplexityVisitor.getChangeComplexity((AstRoot)root, this.dst);
 
@@ -14,7 +14,7 @@ import commitminer.cfd.CFDContext;
 import commitminer.cfd.ControlFlowDifferencing;
 import commitminer.js.cfg.JavaScriptCFGFactory;
 import commitminer.learn.js.analysis.ChangeComplexitySCFA;
-import commitminer.learn.js.analysis.ChangeComplexityVisitor.ChangeComplexity;
+import commitminer.analysis.ChangeComplexityVisitor.ChangeComplexity;
 
 public class TestChangeComplexity {
 
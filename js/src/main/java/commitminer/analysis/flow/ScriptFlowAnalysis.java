@@ -11,12 +11,14 @@ import org.deri.iris.storage.IRelation;
 import org.mozilla.javascript.ast.AstNode;
 import org.mozilla.javascript.ast.ScriptNode;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.SourceCodeFileAnalysis;
 import commitminer.analysis.SourceCodeFileChange;
 import commitminer.analysis.flow.abstractdomain.Address;
 import commitminer.analysis.flow.abstractdomain.Helpers;
 import commitminer.analysis.flow.abstractdomain.State;
 import commitminer.analysis.flow.factories.StateFactory;
+import commitminer.cfd.LazyCFGs;
 import commitminer.cfg.CFG;
 import commitminer.cfg.ICFGVisitorFactory;
 import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode;
@@ -42,14 +44,47 @@ public class ScriptFlowAnalysis extends SourceCodeFileAnalysis {
 	@Override
 	public void analyze(SourceCodeFileChange sourceCodeFileChange,
 			Map<IPredicate, IRelation> facts, ClassifiedASTNode root,
-			List<CFG> cfgs) throws Exception {
+			List<CFG> cfgs, AnalysisContext context) throws Exception {
+		this.analyze(sourceCodeFileChange, facts, root, cfgs, null, context);
+	}
+
+	/**
+	 * In change-scoped mode, the CFG of a function that has not been built
+	 * is built when the analysis first reaches the function. Functions the
+	 * analysis never reaches have no states, so skipping their CFGs does not
+	 * change the facts.
+	 */
+	@Override
+	public void analyze(SourceCodeFileChange sourceCodeFileChange,
+			Map<IPredicate, IRelation> facts, ClassifiedASTNode root,
+			List<CFG> cfgs, LazyCFGs lazyCFGs, AnalysisContext context) throws Exception {
 		
 		/* Start a timer for this analysis. We don't want to run forever. */
 		StopWatch timer = new StopWatch();
 		timer.start();
 		
 		/* Build a map of AstNodes to CFGs. Used for inter-proc CFA. */
-		Map<AstNode, CFG> cfgMap = new HashMap<AstNode, CFG>();
+		Map<AstNode, CFG> cfgMap;
+		if(lazyCFGs == null) {
+			cfgMap = new HashMap<AstNode, CFG>();
+		}
+		else {
+			cfgMap = new HashMap<AstNode, CFG>() {
+				private static final long serialVersionUID = 1L;
+				@Override
+				public CFG get(Object key) {
+					CFG cfg = super.get(key);
+					if(cfg == null && key instanceof AstNode) {
+						cfg = lazyCFGs.getDst((AstNode)key);
+						if(cfg != null) {
+							cfg.attachTimer(timer, TIMEOUT);
+							this.put((AstNode)key, cfg);
+						}
+					}
+					return cfg;
+				}
+			};
+		}
 		for(CFG cfg : cfgs) {
 			cfg.attachTimer(timer, TIMEOUT);
 			cfgMap.put((AstNode)cfg.getEntryNode().getStatement(), cfg);
@@ -72,7 +107,7 @@ public class ScriptFlowAnalysis extends SourceCodeFileAnalysis {
 		/* Generate facts from the results of the analysis. */
 		for(CFG cfg : cfgs) {
 			for(ICFGVisitorFactory cfgVF : cfgVisitorFactories) {
-				cfg.accept(cfgVF.newInstance(sourceCodeFileChange, facts));
+				cfg.accept(cfgVF.newInstance(sourceCodeFileChange, facts, context));
 			}
 		}
 
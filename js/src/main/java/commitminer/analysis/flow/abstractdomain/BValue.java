@@ -1,5 +1,6 @@
 package commitminer.analysis.flow.abstractdomain;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.annotation.DependencyIdentifier;
 import commitminer.analysis.options.Options;
 
@@ -269,7 +270,7 @@ public class BValue implements DependencyIdentifier {
 		if(!this.addressAD.equals(v.addressAD)) return false;
 		if(!this.change.equals(v.change)) return false;
 		if(!this.definerIDs.equals(v.definerIDs)) return false;
-        if(Options.getInstance().getChangeImpact() == Options.ChangeImpact.DEPENDENCIES)
+        if(AnalysisContext.getCurrentOptions().getChangeImpact() == Options.ChangeImpact.DEPENDENCIES)
 			if(!this.dependent.equals(v.dependent)) return false;
 		return true;
 	}
@@ -2,6 +2,7 @@ package commitminer.analysis.flow.abstractdomain;
 
 import org.mozilla.javascript.ast.AstNode;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.options.Options;
 import commitminer.cfg.CFGEdge;
 import commitminer.cfg.CFGNode;
@@ -86,7 +87,7 @@ public class Control {
 		if(!(o instanceof Control)) return false;
 		Control cc = (Control)o;
 
-        if(Options.getInstance().getChangeImpact() == Options.ChangeImpact.DEPENDENCIES)
+        if(AnalysisContext.getCurrentOptions().getChangeImpact() == Options.ChangeImpact.DEPENDENCIES)
 			return call.equals(cc.call) && dependency.equals(cc.dependency);
         else
 			return call.equals(cc.call);
@@ -12,6 +12,7 @@ import org.mozilla.javascript.ast.AstRoot;
 import org.mozilla.javascript.ast.FunctionNode;
 import org.mozilla.javascript.ast.ScriptNode;
 
+import commitminer.analysis.AnalysisContext;
 import commitminer.analysis.SourceCodeFileAnalysis;
 import commitminer.analysis.SourceCodeFileChange;
 import commitminer.analysis.flow.FunctionTreeVisitor;
@@ -50,7 +51,8 @@ public class ScriptAnalysis extends SourceCodeFileAnalysis {
 	public void analyze(SourceCodeFileChange sourceCodeFileChange,
 						Map<IPredicate, IRelation> facts,
 						ClassifiedASTNode root,
-						List<CFG> cfgs) throws Exception {
+						List<CFG> cfgs,
+						AnalysisContext context) throws Exception {
 
 		/* Check we are working with the correct AST type. */
 		if(!(root instanceof AstRoot)) throw new IllegalArgumentException("The AST must be parsed from Eclipse JDT.");
@@ -1,7 +1,14 @@
 package commitminer.js.cfg;
 
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Token;
@@ -21,6 +28,7 @@ import org.mozilla.javascript.ast.FunctionNode;
 import org.mozilla.javascript.ast.IfStatement;
 import org.mozilla.javascript.ast.InfixExpression;
 import org.mozilla.javascript.ast.Name;
+import org.mozilla.javascript.ast.NodeVisitor;
 import org.mozilla.javascript.ast.ParenthesizedExpression;
 import org.mozilla.javascript.ast.PropertyGet;
 import org.mozilla.javascript.ast.ReturnStatement;
@@ -37,7 +45,10 @@ import org.mozilla.javascript.ast.WithStatement;
 
 import com.github.gumtreediff.gen.TreeGenerator;
 import com.github.gumtreediff.gen.js.RhinoTreeGenerator;
+import com.github.gumtreediff.gen.js.RhinoTreeVisitor;
+import com.github.gumtreediff.tree.TreeContext;
 import commitminer.cfg.CFG;
+import commitminer.cfg.CFGBuilder;
 import commitminer.cfg.CFGEdge;
 import commitminer.cfg.CFGFactory;
 import commitminer.cfg.CFGNode;
@@ -83,12 +94,96 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		return cfgs;
 	}
 
+	/**
+	 * Builds the CFG of the script and of each function as separate tasks.
+	 * Each task numbers its nodes and edges from zero. The nodes each task
+	 * created are then shifted into the ID ranges the sequential build would
+	 * have given them (the script first, then the functions in order).
+	 */
+	@Override
+	public List<CFG> createCFGs(ClassifiedASTNode root, ForkJoinPool pool) {
+
+		/* Check we are working with the correct AST type. */
+		if(!(root instanceof AstRoot)) throw new IllegalArgumentException("The AST must be parsed from Apache Rhino.");
+		AstRoot script = (AstRoot)root;
+
+		/* The script and the functions, in the order of the sequential build. */
+		List<ScriptNode> functions = new LinkedList<ScriptNode>();
+		functions.add(script);
+		functions.addAll(FunctionNodeVisitor.getFunctions(script));
+		if(functions.size() == 1) return this.createCFGs(root);
+
+		/* Build each CFG with its own ID generator. */
+		List<Future<CFG>> futures = new LinkedList<Future<CFG>>();
+		final List<IDGen> idgens = new LinkedList<IDGen>();
+		for(final ScriptNode function : functions) {
+			final IDGen idgen = new IDGen(true);
+			idgens.add(idgen);
+			futures.add(pool.submit(new Callable<CFG>() {
+				@Override
+				public CFG call() {
+					return JavaScriptCFGFactory.buildScriptCFG(function, idgen);
+				}
+			}));
+		}
+
+		/* Shift each CFG past the IDs used by the CFGs before it. */
+		List<CFG> cfgs = new LinkedList<CFG>();
+		int offset = 0;
+		Iterator<IDGen> idgen = idgens.iterator();
+		try {
+			for(Future<CFG> future : futures) {
+				CFG cfg = future.get();
+				IDGen current = idgen.next();
+				current.shiftIDs(offset);
+				offset += current.getCount();
+				cfgs.add(cfg);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while building CFGs.", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+			throw new IllegalStateException("Could not build CFGs.", e.getCause());
+		}
+
+		return cfgs;
+
+	}
+
+	@Override
+	public CFGBuilder newCFGBuilder(ClassifiedASTNode root) {
+		if(!(root instanceof AstRoot)) throw new IllegalArgumentException("The AST must be parsed from Apache Rhino.");
+		return new ScriptCFGBuilder((AstRoot)root);
+	}
+
 	@Override
 	public TreeGenerator getTreeGenerator(String extension) {
 		if(acceptsExtension(extension)) return new RhinoTreeGenerator();
 		return null;
 	}
 
+	/**
+	 * Copies the Rhino AST (which is already pre-processed if the tree was)
+	 * and builds the GumTree nodes for the copy. This is much cheaper than
+	 * parsing and pre-processing the source code again.
+	 */
+	@Override
+	public TreeContext copyGumTree(TreeContext tree) {
+		AstRoot root = (AstRoot)tree.getRoot().getClassifiedASTNode();
+		AstRoot copy;
+		try {
+			copy = (AstRoot)root.clone(null);
+		} catch (CloneNotSupportedException e) {
+			return null;
+		}
+		RhinoTreeVisitor visitor = new RhinoTreeVisitor(copy);
+		copy.visitAll(visitor);
+		TreeContext context = visitor.getTree(copy);
+		context.validate();
+		return context;
+	}
+
 	@Override
 	public boolean acceptsExtension(String extension) {
 		return extension.equals("js");
@@ -108,8 +203,8 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		/* Start by getting the CFG for the script. There is one entry point
 		 * and one exit point for a script and function. */
 
-		CFGNode scriptEntry = new CFGNode(scriptNode, name + "_ENTRY", idgen.getUniqueID());
-		CFGNode scriptExit = new CFGNode(new EmptyStatement(), name + "_EXIT", idgen.getUniqueID());
+		CFGNode scriptEntry = idgen.newNode(scriptNode, name + "_ENTRY");
+		CFGNode scriptExit = idgen.newNode(new EmptyStatement(), name + "_EXIT");
 
         /* Build the CFG for the script. */
         CFG cfg = new CFG(scriptEntry);
@@ -119,7 +214,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
         CFG subGraph = JavaScriptCFGFactory.build(scriptNode, idgen);
 
         if(subGraph == null) {
-        	CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+        	CFGNode empty = idgen.newNode(new EmptyStatement());
         	subGraph = new CFG(empty);
         	subGraph.addExitNode(empty);
         }
@@ -234,7 +329,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 	 */
 	private static CFG build(IfStatement ifStatement, IDGen idgen) {
 
-		CFGNode ifNode = new CFGNode(new EmptyStatement(), "IF", idgen.getUniqueID());
+		CFGNode ifNode = idgen.newNode(new EmptyStatement(), "IF");
 		CFG cfg = new CFG(ifNode);
 
 		/* Build the true branch. */
@@ -242,7 +337,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		CFG trueBranch = JavaScriptCFGFactory.buildSwitch(ifStatement.getThenPart(), idgen);
 
 		if(trueBranch == null) {
-			CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+			CFGNode empty = idgen.newNode(new EmptyStatement());
 			trueBranch = new CFG(empty);
 			trueBranch.addExitNode(empty);
 		}
@@ -261,7 +356,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		CFG falseBranch = JavaScriptCFGFactory.buildSwitch(ifStatement.getElsePart(), idgen);
 
 		if(falseBranch == null) {
-			CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+			CFGNode empty = idgen.newNode(new EmptyStatement());
 			falseBranch = new CFG(empty);
 			falseBranch.addExitNode(empty);
 		}
@@ -295,7 +390,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 	 */
 	private static CFG build(WhileLoop whileLoop, IDGen idgen) {
 
-		CFGNode whileNode = new CFGNode(new EmptyStatement(), "WHILE", idgen.getUniqueID());
+		CFGNode whileNode = idgen.newNode(new EmptyStatement(), "WHILE");
 		CFG cfg = new CFG(whileNode);
 
 		/* Build the true branch. */
@@ -303,7 +398,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		CFG trueBranch = JavaScriptCFGFactory.buildSwitch(whileLoop.getBody(), idgen);
 
 		if(trueBranch == null) {
-			CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+			CFGNode empty = idgen.newNode(new EmptyStatement());
 			trueBranch = new CFG(empty);
 			trueBranch.addExitNode(empty);
 		}
@@ -338,7 +433,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		falseBranchCondition.setChangeType(whileLoop.getCondition().getChangeType());
 		falseBranchCondition.setParent(whileLoop);
 
-        CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+        CFGNode empty = idgen.newNode(new EmptyStatement());
 		whileNode.addEdge(new CFGEdge(falseBranchCondition, whileNode, empty, idgen.getUniqueID()));
 		cfg.addExitNode(empty);
 
@@ -353,8 +448,8 @@ public class JavaScriptCFGFactory implements CFGFactory {
 	 */
 	private static CFG build(DoLoop doLoop, IDGen idgen) {
 
-		CFGNode doNode = new CFGNode(new EmptyStatement(), "DO", idgen.getUniqueID());
-		CFGNode whileNode = new CFGNode(new EmptyStatement(), "WHILE", idgen.getUniqueID());
+		CFGNode doNode = idgen.newNode(new EmptyStatement(), "DO");
+		CFGNode whileNode = idgen.newNode(new EmptyStatement(), "WHILE");
 		CFG cfg = new CFG(doNode);
 
 		/* Build the loop branch. */
@@ -362,7 +457,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		CFG loopBranch = JavaScriptCFGFactory.buildSwitch(doLoop.getBody(), idgen);
 
 		if(loopBranch == null) {
-			CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+			CFGNode empty = idgen.newNode(new EmptyStatement());
 			loopBranch = new CFG(empty);
 			loopBranch.addExitNode(empty);
 		}
@@ -401,7 +496,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		falseBranchCondition.setChangeType(doLoop.getCondition().getChangeType());
 		falseBranchCondition.setParent(doLoop);
 
-        CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+        CFGNode empty = idgen.newNode(new EmptyStatement());
 		whileNode.addEdge(falseBranchCondition, empty, idgen.getUniqueID());
 		cfg.addExitNode(empty);
 
@@ -418,15 +513,15 @@ public class JavaScriptCFGFactory implements CFGFactory {
 	 */
 	private static CFG build(ForLoop forLoop, IDGen idgen) {
 
-		CFGNode forNode = new CFGNode(forLoop.getInitializer(), idgen.getUniqueID());
+		CFGNode forNode = idgen.newNode(forLoop.getInitializer());
 		CFG cfg = new CFG(forNode);
 
 		/* After variables are declared, add an empty node with two edges. */
-		CFGNode condition = new CFGNode(new EmptyStatement(), "FOR", idgen.getUniqueID());
+		CFGNode condition = idgen.newNode(new EmptyStatement(), "FOR");
 		forNode.addEdge(null, condition, idgen.getUniqueID());
 
 		/* After the body of the loop executes, add the node to perform the increment. */
-		CFGNode increment = new CFGNode(forLoop.getIncrement(), idgen.getUniqueID());
+		CFGNode increment = idgen.newNode(forLoop.getIncrement());
 		increment.addEdge(null, condition, idgen.getUniqueID());
 
 		/* Build the true branch. */
@@ -434,7 +529,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		CFG trueBranch = JavaScriptCFGFactory.buildSwitch(forLoop.getBody(), idgen);
 
 		if(trueBranch == null) {
-			CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+			CFGNode empty = idgen.newNode(new EmptyStatement());
 			trueBranch = new CFG(empty);
 			trueBranch.addExitNode(empty);
 		}
@@ -469,7 +564,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		falseBranchCondition.setChangeType(forLoop.getCondition().getChangeType());
 		falseBranchCondition.setParent(forLoop);
 
-        CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+        CFGNode empty = idgen.newNode(new EmptyStatement());
 		condition.addEdge(falseBranchCondition, empty, idgen.getUniqueID());
 		cfg.addExitNode(empty);
 
@@ -498,7 +593,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 
 		/* Start with the variable declaration. */
 		AstNode iterator = forInLoop.getIterator();
-		CFGNode forInNode = new CFGNode(iterator, idgen.getUniqueID());
+		CFGNode forInNode = idgen.newNode(iterator);
 		CFG cfg = new CFG(forInNode);
 
 		/* Get the variable being assigned. */
@@ -536,7 +631,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
         targetAssignment.setVersion(forInLoop.getVersion());
         targetAssignment.setID(forInLoop.getID() * -1);
 
-        CFGNode assignment = new CFGNode(targetAssignment, idgen.getUniqueID());
+        CFGNode assignment = idgen.newNode(targetAssignment);
 
         /* Create the the condition that checks if an object still has keys.
          * The condition is assigned to the true/false loop branches. */
@@ -554,7 +649,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
         keyConditionFunction.setParent(forInLoop);
         keyConditionFunction.setID(forInLoop.getID() * -1);
 
-		CFGNode condition = new CFGNode(new EmptyStatement(), "FORIN", idgen.getUniqueID());
+		CFGNode condition = idgen.newNode(new EmptyStatement(), "FORIN");
 
 		/* Add the edges connecting the entry point to the assignment and
 		 * assignment to condition. */
@@ -566,7 +661,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		CFG trueBranch = JavaScriptCFGFactory.buildSwitch(forInLoop.getBody(), idgen);
 
 		if(trueBranch == null) {
-			CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+			CFGNode empty = idgen.newNode(new EmptyStatement());
 			trueBranch = new CFG(empty);
 			trueBranch.addExitNode(empty);
 		}
@@ -589,7 +684,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
         }
 
         /* Create a node for the false branch to exit the loop. */
-        CFGNode falseBranch = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+        CFGNode falseBranch = idgen.newNode(new EmptyStatement());
         cfg.addExitNode(falseBranch);
 
 		/* The false branch condition is the negation of the true branch
@@ -621,7 +716,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 	 */
 	private static CFG build(SwitchStatement switchStatement, IDGen idgen) {
 
-		CFGNode switchNode = new CFGNode(new EmptyStatement(), "SWITCH", idgen.getUniqueID());
+		CFGNode switchNode = idgen.newNode(new EmptyStatement(), "SWITCH");
 		CFG cfg = new CFG(switchNode);
 
 		/* Keep track of the default edge so we can update the condition later. */
@@ -643,7 +738,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 			/* If it is an empty case, make our lives easier by adding an
 			 * empty statement as the entry and exit node. */
             if(subGraph == null) {
-                CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+                CFGNode empty = idgen.newNode(new EmptyStatement());
                 subGraph = new CFG(empty);
                 subGraph.addExitNode(empty);
             }
@@ -700,8 +795,8 @@ public class JavaScriptCFGFactory implements CFGFactory {
 
 		/* Setup the default path if wasn't explicitly given in the switch statement. */
 		if(defaultEdge == null) {
-			CFGNode defaultPath = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
-            defaultEdge = new CFGEdge(null, switchNode, new CFGNode(new EmptyStatement(), idgen.getUniqueID()), idgen.getUniqueID());
+			CFGNode defaultPath = idgen.newNode(new EmptyStatement());
+            defaultEdge = new CFGEdge(null, switchNode, idgen.newNode(new EmptyStatement()), idgen.getUniqueID());
             cfg.addExitNode(defaultPath);
 		}
 
@@ -752,8 +847,8 @@ public class JavaScriptCFGFactory implements CFGFactory {
         destroyScopeFunction.addArgument(withStatement.getExpression());
         destroyScopeFunction.setID(withStatement.getID() * -1);
 
-		CFGNode withNode = new CFGNode(createScopeFunction, "BEGIN_SCOPE", idgen.getUniqueID());
-		CFGNode endWithNode = new CFGNode(destroyScopeFunction, "END_SCOPE", idgen.getUniqueID());
+		CFGNode withNode = idgen.newNode(createScopeFunction, "BEGIN_SCOPE");
+		CFGNode endWithNode = idgen.newNode(destroyScopeFunction, "END_SCOPE");
 
 		CFG cfg = new CFG(withNode);
 		cfg.addExitNode(endWithNode);
@@ -761,7 +856,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		CFG scopeBlock = JavaScriptCFGFactory.buildSwitch(withStatement.getStatement(), idgen);
 
         if(scopeBlock == null) {
-            CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+            CFGNode empty = idgen.newNode(new EmptyStatement());
             scopeBlock = new CFG(empty);
             scopeBlock.addExitNode(empty);
         }
@@ -795,11 +890,11 @@ public class JavaScriptCFGFactory implements CFGFactory {
 	 */
 	private static CFG build(TryStatement tryStatement, IDGen idgen) {
 
-		CFGNode tryNode = new CFGNode(new EmptyStatement(), "TRY", idgen.getUniqueID());
+		CFGNode tryNode = idgen.newNode(new EmptyStatement(), "TRY");
 		CFG cfg = new CFG(tryNode);
 
 		/* To make life easier, add a node that represents the exit of the try. */
-		CFGNode exit = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+		CFGNode exit = idgen.newNode(new EmptyStatement());
 		cfg.addExitNode(exit);
 
 		/* Set up the finally block. */
@@ -807,7 +902,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		CFG finallyBlock = JavaScriptCFGFactory.buildSwitch(tryStatement.getFinallyBlock(), idgen);
 
 		if(finallyBlock == null) {
-			CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+			CFGNode empty = idgen.newNode(new EmptyStatement());
 			finallyBlock = new CFG(empty);
 			finallyBlock.addExitNode(empty);
 		}
@@ -848,7 +943,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
             }
 
 			if(catchBlock == null) {
-				CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+				CFGNode empty = idgen.newNode(new EmptyStatement());
 				catchBlock = new CFG(empty);
 				catchBlock.addExitNode(empty);
 			}
@@ -856,7 +951,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 
 				/* Create empty exit nodes so there is an edge from each exit
 				 * node in the finally block for each clause. */
-				CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+				CFGNode empty = idgen.newNode(new EmptyStatement());
 				cfg.addExitNode(empty);
 
 				for(CFGNode exitNode : finallyBlock.getExitNodes()) {
@@ -886,14 +981,14 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		CFG tryBlock = JavaScriptCFGFactory.buildSwitch(tryStatement.getTryBlock(), idgen);
 
 		if(tryBlock == null) {
-			CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+			CFGNode empty = idgen.newNode(new EmptyStatement());
 			tryBlock = new CFG(empty);
 			tryBlock.addExitNode(finallyBlock.getEntryNode());
 		}
 		else {
             /* Create empty exit nodes so there is an edge from each exit
              * node in the finally block for the catch block. */
-            CFGNode empty = new CFGNode(new EmptyStatement(), idgen.getUniqueID());
+            CFGNode empty = idgen.newNode(new EmptyStatement());
             cfg.addExitNode(empty);
 
             for(CFGNode exitNode : finallyBlock.getExitNodes()) {
@@ -938,7 +1033,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 		for(CFGNode jumpNode : jumpNodes) {
 
 			/* Make a shallow copy of the node. */
-			CFGNode newJumpNode = CFGNode.copy(jumpNode);
+			CFGNode newJumpNode = idgen.track(CFGNode.copy(jumpNode));
 			newJumpNodes.add(newJumpNode);
 
 			/* Add an edge from the finally block to the return node. */
@@ -969,7 +1064,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 	 */
 	private static CFG build(BreakStatement breakStatement, IDGen idgen) {
 
-		CFGNode breakNode = new CFGNode(breakStatement, idgen.getUniqueID());
+		CFGNode breakNode = idgen.newNode(breakStatement);
 		CFG cfg = new CFG(breakNode);
 		cfg.addBreakNode(breakNode);
 		return cfg;
@@ -984,7 +1079,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 	 */
 	private static CFG build(ContinueStatement continueStatement, IDGen idgen) {
 
-		CFGNode continueNode = new CFGNode(continueStatement, idgen.getUniqueID());
+		CFGNode continueNode = idgen.newNode(continueStatement);
 		CFG cfg = new CFG(continueNode);
 		cfg.addContinueNode(continueNode);
 		return cfg;
@@ -999,7 +1094,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 	 */
 	private static CFG build(ReturnStatement returnStatement, IDGen idgen) {
 
-		CFGNode returnNode = new CFGNode(returnStatement, idgen.getUniqueID());
+		CFGNode returnNode = idgen.newNode(returnStatement);
 		CFG cfg = new CFG(returnNode);
 		cfg.addReturnNode(returnNode);
 		return cfg;
@@ -1014,7 +1109,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 	 */
 	private static CFG build(ThrowStatement throwStatement, IDGen idgen) {
 
-		CFGNode throwNode = new CFGNode(throwStatement, idgen.getUniqueID());
+		CFGNode throwNode = idgen.newNode(throwStatement);
 		CFG cfg = new CFG(throwNode);
 		cfg.addThrowNode(throwNode);
 		return cfg;
@@ -1030,7 +1125,7 @@ public class JavaScriptCFGFactory implements CFGFactory {
 	 */
 	private static CFG build(AstNode statement, IDGen idgen) {
 
-		CFGNode expressionNode = new CFGNode(statement, idgen.getUniqueID());
+		CFGNode expressionNode = idgen.newNode(statement);
 		CFG cfg = new CFG(expressionNode);
 		cfg.addExitNode(expressionNode);
 		return cfg;
@@ -1080,19 +1175,109 @@ public class JavaScriptCFGFactory implements CFGFactory {
 
 	}
 
+	/**
+	 * Builds the CFGs of a script one function at a time.
+	 */
+	private class ScriptCFGBuilder implements CFGBuilder {
+
+		private AstRoot script;
+		private IDGen idgen;
+
+		public ScriptCFGBuilder(AstRoot script) {
+			this.script = script;
+			this.idgen = new IDGen();
+		}
+
+		@Override
+		public List<ClassifiedASTNode> getFunctions() {
+			List<ClassifiedASTNode> functions = new LinkedList<ClassifiedASTNode>();
+			functions.add(this.script);
+			functions.addAll(FunctionNodeVisitor.getFunctions(this.script));
+			return functions;
+		}
+
+		@Override
+		public List<ClassifiedASTNode> getChangedFunctions() {
+
+			/* Mark the script and functions that enclose a changed node. */
+			final Set<ScriptNode> changed = new HashSet<ScriptNode>();
+			this.script.visit(new NodeVisitor() {
+				@Override
+				public boolean visit(AstNode node) {
+					ChangeType changeType = node.getChangeType();
+					if(changeType == ChangeType.UNCHANGED || changeType == ChangeType.UNKNOWN) return true;
+					for(AstNode ancestor = node; ancestor != null; ancestor = ancestor.getParent()) {
+						if(ancestor instanceof ScriptNode && !changed.add((ScriptNode)ancestor)) break;
+					}
+					return true;
+				}
+			});
+
+			/* The script is always analyzed. */
+			List<ClassifiedASTNode> functions = new LinkedList<ClassifiedASTNode>();
+			for(ClassifiedASTNode function : this.getFunctions()) {
+				if(function == this.script || changed.contains(function)) functions.add(function);
+			}
+			return functions;
+
+		}
+
+		@Override
+		public CFG build(ClassifiedASTNode function) {
+			return JavaScriptCFGFactory.buildScriptCFG((ScriptNode)function, this.idgen);
+		}
+
+	}
+
 	/**
 	 * For creating unique IDs for CFGNodes and CFGEdges.
 	 */
 	private class IDGen {
 		private int uniqueID;
+		/** The nodes created with this generator, or null if not tracked. **/
+		private List<CFGNode> nodes;
 		public IDGen() {
+			this(false);
+		}
+		/**
+		 * @param track Keep the nodes this generator creates, so that their
+		 * 				IDs can be shifted when the CFG is built in parallel.
+		 */
+		public IDGen(boolean track) {
 			this.uniqueID = 0;
+			this.nodes = track ? new LinkedList<CFGNode>() : null;
 		}
 		public int getUniqueID() {
 			int id = uniqueID;
 			uniqueID++;
 			return id;
 		}
+		public int getCount() {
+			return uniqueID;
+		}
+		public CFGNode newNode(ClassifiedASTNode statement) {
+			return track(new CFGNode(statement, getUniqueID()));
+		}
+		public CFGNode newNode(ClassifiedASTNode statement, String name) {
+			return track(new CFGNode(statement, name, getUniqueID()));
+		}
+		/**
+		 * Keeps a node that carries IDs from this generator but was not
+		 * created by it (e.g., a copy). Nodes reachable from a kept node
+		 * (e.g., a copied finally block) do not need to be kept.
+		 * @return the node.
+		 */
+		public CFGNode track(CFGNode node) {
+			if(nodes != null) nodes.add(node);
+			return node;
+		}
+		/**
+		 * Adds an offset to the IDs of every node and edge this generator
+		 * numbered, including unreachable ones.
+		 */
+		public void shiftIDs(int offset) {
+			CFG.shiftIDs(nodes, offset);
+		}
 	}
 
 }
@@ -0,0 +1,133 @@
+package commitminer.test.cfd;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.NodeVisitor;
+
+import com.github.gumtreediff.tree.ITree;
+import com.github.gumtreediff.tree.TreeContext;
+import com.github.gumtreediff.tree.TreeUtils;
+
+import commitminer.cfd.ControlFlowDifferencing;
+import commitminer.cfd.ParseCache;
+import commitminer.js.cfg.JavaScriptCFGFactory;
+
+public class TestParseCache extends TestCase {
+
+	private static final String SOURCE = "function f(a) {\n  if(a) return a.b;\n  return null;\n}\nf(1);\n";
+
+	private static final String MULTI_LINE_SOURCE = "/* A header comment. */\n"
+			+ "var x = { a: 1,\n  b: function(y) {\n    // Returns y.\n    return y;\n  }\n};\n\n"
+			+ "function f(a) {\n  if(a) {\n    return x.b(a.c);\n  }\n  /* Nothing to do. */\n  return null;\n}\n"
+			+ "f(x.a);\n";
+
+	@Test
+	public void testCopiesCachedTree() throws IOException {
+
+		JavaScriptCFGFactory factory = new JavaScriptCFGFactory();
+		ParseCache cache = new ParseCache(ParseCache.DEFAULT_CAPACITY);
+
+		TreeContext first = cache.get(factory, "blob", SOURCE, "test.js", false);
+		TreeContext second = cache.get(factory, "blob", SOURCE, "test.js", false);
+
+		TestCase.assertEquals("the second lookup should be a hit", 1, cache.getHits());
+		TestCase.assertEquals("the first lookup should be a miss", 1, cache.getMisses());
+
+		/* Each lookup gets its own AST, since the ASTs are classified in place. */
+		AstRoot firstRoot = (AstRoot)first.getRoot().getClassifiedASTNode();
+		AstRoot secondRoot = (AstRoot)second.getRoot().getClassifiedASTNode();
+		TestCase.assertFalse("the lookups share an AST", firstRoot == secondRoot);
+		TestCase.assertEquals("the copy does not match the source", firstRoot.toSource(), secondRoot.toSource());
+		TestCase.assertEquals("the copy has a different number of nodes", first.getRoot().getSize(), second.getRoot().getSize());
+
+	}
+
+	@Test
+	public void testKeyedByPreProcessing() throws IOException {
+
+		JavaScriptCFGFactory factory = new JavaScriptCFGFactory();
+		ParseCache cache = new ParseCache(ParseCache.DEFAULT_CAPACITY);
+
+		cache.get(factory, "blob", SOURCE, "test.js", false);
+		cache.get(factory, "blob", SOURCE, "test.js", true);
+
+		TestCase.assertEquals("pre-processed trees should be cached separately", 2, cache.getMisses());
+
+	}
+
+	@Test
+	public void testCapacity() throws IOException {
+
+		JavaScriptCFGFactory factory = new JavaScriptCFGFactory();
+		ParseCache cache = new ParseCache(SOURCE.length() * ParseCache.BYTES_PER_CHARACTER);
+
+		cache.get(factory, "a", SOURCE, "test.js", false);
+		cache.get(factory, "b", SOURCE, "test.js", false);
+		cache.get(factory, "a", SOURCE, "test.js", false);
+
+		TestCase.assertEquals("the least recently used tree should be evicted", 3, cache.getMisses());
+
+	}
+
+	@Test
+	public void testCopyKeepsPositions() throws IOException {
+
+		JavaScriptCFGFactory factory = new JavaScriptCFGFactory();
+		ParseCache cache = new ParseCache(ParseCache.DEFAULT_CAPACITY);
+
+		TreeContext fresh = ControlFlowDifferencing.createGumTree(factory, MULTI_LINE_SOURCE, "test.js", false);
+		cache.get(factory, "blob", MULTI_LINE_SOURCE, "test.js", false);
+		TreeContext copy = cache.get(factory, "blob", MULTI_LINE_SOURCE, "test.js", false);
+		TestCase.assertEquals("the second lookup should be a hit", 1, cache.getHits());
+
+		/* The GumTree positions are used by the LINES matcher. */
+		Iterator<ITree> freshTrees = TreeUtils.preOrder(fresh.getRoot()).iterator();
+		Iterator<ITree> copyTrees = TreeUtils.preOrder(copy.getRoot()).iterator();
+		while(freshTrees.hasNext() && copyTrees.hasNext()) {
+			ITree freshTree = freshTrees.next();
+			ITree copyTree = copyTrees.next();
+			TestCase.assertEquals("the copy has a different node type", freshTree.getType(), copyTree.getType());
+			TestCase.assertEquals("the copy has a different position", freshTree.getPos(), copyTree.getPos());
+			TestCase.assertEquals("the copy has a different length", freshTree.getLength(), copyTree.getLength());
+		}
+		TestCase.assertEquals("the copy has a different number of nodes", freshTrees.hasNext(), copyTrees.hasNext());
+
+		/* The Rhino positions (including comments) are used by annotations. */
+		List<AstNode> freshNodes = getNodes((AstRoot)fresh.getRoot().getClassifiedASTNode());
+		List<AstNode> copyNodes = getNodes((AstRoot)copy.getRoot().getClassifiedASTNode());
+		TestCase.assertEquals("the copy has a different number of AST nodes", freshNodes.size(), copyNodes.size());
+		for(int i = 0; i < freshNodes.size(); i++) {
+			AstNode freshNode = freshNodes.get(i);
+			AstNode copyNode = copyNodes.get(i);
+			TestCase.assertEquals("the copy has a different AST node", freshNode.getClass(), copyNode.getClass());
+			TestCase.assertEquals("the copy has a different line number", freshNode.getLineno(), copyNode.getLineno());
+			TestCase.assertEquals("the copy has a different absolute position", freshNode.getFixedPosition(), copyNode.getFixedPosition());
+			TestCase.assertEquals("the copy has a different length", freshNode.getLength(), copyNode.getLength());
+		}
+
+	}
+
+	/**
+	 * @return The nodes of the AST (including comments) in visit order.
+	 */
+	private static List<AstNode> getNodes(AstRoot root) {
+		final List<AstNode> nodes = new LinkedList<AstNode>();
+		root.visitAll(new NodeVisitor() {
+			@Override
+			public boolean visit(AstNode node) {
+				nodes.add(node);
+				return true;
+			}
+		});
+		return nodes;
+	}
+
+}
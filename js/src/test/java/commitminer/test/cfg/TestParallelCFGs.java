@@ -0,0 +1,90 @@
+package commitminer.test.cfg;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.AstRoot;
+
+import commitminer.cfg.CFG;
+import commitminer.cfg.CFGEdge;
+import commitminer.cfg.CFGNode;
+import commitminer.cfg.CFGPrinter;
+import commitminer.js.cfg.JavaScriptCFGFactory;
+
+public class TestParallelCFGs extends TestCase {
+
+	private static final String SOURCE = "var x = 1;\n"
+			+ "function f(a) {\n  if(a) return a.b;\n  while(a) { a = a.next; }\n  return null;\n}\n"
+			+ "function g(b) {\n  var h = function() { try { b(); } catch(e) { return e; } };\n  return h;\n}\n"
+			+ "function dead(c) {\n  return c;\n  c = c + 1;\n  if(c) { return null; }\n}\n"
+			+ "function fail(e) {\n  throw e;\n}\n"
+			+ "f(g(x));\n";
+
+	@Test
+	public void testSameAsSequential() {
+
+		JavaScriptCFGFactory factory = new JavaScriptCFGFactory();
+
+		List<String> sequential = serialize(factory.createCFGs(parse()));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		List<String> parallel = serialize(factory.createCFGs(parse(), pool));
+		pool.shutdown();
+
+		/* The node and edge IDs are part of the serialized CFGs. */
+		TestCase.assertEquals("the concurrent build produced different CFGs", sequential, parallel);
+
+	}
+
+	@Test
+	public void testUniqueIDs() {
+
+		JavaScriptCFGFactory factory = new JavaScriptCFGFactory();
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		List<CFG> cfgs = factory.createCFGs(parse(), pool);
+		pool.shutdown();
+
+		/* Nodes and edges share one ID space. The exit of a function that
+		 * only throws is not reachable from its entry, but still needs an ID
+		 * outside the other CFGs' ranges. */
+		Set<Integer> ids = new HashSet<Integer>();
+		for(CFG cfg : cfgs) {
+			Set<CFGNode> visited = new HashSet<CFGNode>();
+			Stack<CFGNode> stack = new Stack<CFGNode>();
+			stack.push(cfg.getEntryNode());
+			stack.addAll(cfg.getExitNodes());
+			while(!stack.isEmpty()) {
+				CFGNode node = stack.pop();
+				if(!visited.add(node)) continue;
+				TestCase.assertTrue("duplicate node ID " + node.getId(), ids.add(node.getId()));
+				for(CFGEdge edge : node.getEdges()) {
+					TestCase.assertTrue("duplicate edge ID " + edge.getId(), ids.add(edge.getId()));
+					stack.push(edge.getTo());
+				}
+			}
+		}
+
+	}
+
+	private static AstRoot parse() {
+		return new Parser().parse(SOURCE, "test.js", 1);
+	}
+
+	private static List<String> serialize(List<CFG> cfgs) {
+		List<String> serialized = new LinkedList<String>();
+		for(CFG cfg : cfgs) {
+			serialized.add(CFGPrinter.adjacencyList(cfg));
+			for(CFGNode exit : cfg.getExitNodes()) serialized.add("EXIT(" + exit.getId() + ")");
+		}
+		return serialized;
+	}
+
+}
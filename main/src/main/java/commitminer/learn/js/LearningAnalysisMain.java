@@ -3,11 +3,9 @@ package commitminer.learn.js;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.text.ParseException;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -16,8 +14,13 @@ import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 
 import commitminer.analysis.factories.ICommitAnalysisFactory;
+import commitminer.batch.CommitRegistry;
 import commitminer.batch.GitProjectAnalysis;
-import commitminer.batch.GitProjectAnalysisTask;
+import commitminer.batch.ProjectScheduler;
+import commitminer.git.GitProject;
+import commitminer.git.HistoryFilter;
+import commitminer.git.PackCacheConfig;
+import commitminer.git.RepositoryAcquirer;
 import commitminer.learn.analysis.LearningDataSet;
 import commitminer.learn.js.factories.LearningCommitAnalysisFactory;
 
@@ -54,7 +57,21 @@ public class LearningAnalysisMain {
 
 		/* Create the commit analysis that will analyze commits. */
 		LearningDataSet dataSet = LearningDataSet.createLearningDataSet(options.getDataSetPath());
-		ICommitAnalysisFactory factory = new LearningCommitAnalysisFactory();
+		final ICommitAnalysisFactory factory = new LearningCommitAnalysisFactory();
+
+		/* Size JGit's pack caches before any repository is opened. */
+		PackCacheConfig.configure(options.getPackedGitLimit(), options.getPackedGitWindowSize(),
+								  options.getDeltaBaseCacheLimit(), options.getPackedGitOpenFiles());
+
+		/* Limit the history to analyze. */
+		final HistoryFilter historyFilter;
+		try {
+			historyFilter = HistoryFilter.fromStrings(options.getSince(), options.getUntil(),
+													  options.getAuthors(), options.getPaths());
+		} catch (ParseException e) {
+			LearningAnalysisMain.printUsage("Dates must be in " + HistoryFilter.DATE_FORMAT + " format.", parser);
+			return;
+		}
 
         GitProjectAnalysis gitProjectAnalysis;
 
@@ -64,6 +81,10 @@ public class LearningAnalysisMain {
 			try {
                 gitProjectAnalysis = GitProjectAnalysis.fromURI(options.getURI(),
                 		CHECKOUT_DIR, /* TODO AnnotationMetricsPostProcessor */null, factory);
+                gitProjectAnalysis.setNThreads(options.getNThreads());
+                gitProjectAnalysis.setLocalityOrder(options.getLocality());
+                gitProjectAnalysis.setUseCommitIndex(!options.getNoCommitIndex());
+                gitProjectAnalysis.setHistoryFilter(historyFilter);
 				gitProjectAnalysis.analyze();
 
 			} catch (Exception e) {
@@ -88,47 +109,56 @@ public class LearningAnalysisMain {
 				return;
 			}
 
-			/*
-			 * Create a pool of threads and use a CountDownLatch to check when
-			 * all threads are done.
-			 * http://stackoverflow.com/questions/1250643/how-to-wait-for-all-
-			 * threads-to-finish-using-executorservice
-			 *
-			 * I was going to create a list of Callable objects and use
-			 * executor.invokeAll, but this would remove the start of the
-			 * execution of the tasks from the loop to outside the loop, which
-			 * would mean all git project initializations would have to happen
-			 * before starting the analysis.
-			 */
-			ExecutorService executor = Executors.newFixedThreadPool(options.getNThreads());
-			CountDownLatch latch = new CountDownLatch(uris.size());
-
-			/* Analyze all projects. */
+			/* The scheduler starts the largest projects first and shares
+			 * one pool of threads between all the projects. */
+			final ProjectScheduler scheduler = new ProjectScheduler(options.getNThreads());
+			scheduler.start();
+
+			/* Clone or pull the projects in the background. Each project is
+			 * analyzed as soon as it is ready. */
+			final boolean locality = options.getLocality();
+			final boolean useCommitIndex = !options.getNoCommitIndex();
+
+			/* Forks share most of their history, so each commit is analyzed
+			 * by the first project that reaches it. */
+			final CommitRegistry registry = options.getDeduplicate()
+					? new CommitRegistry(options.getDuplicates()) : null;
+			RepositoryAcquirer acquirer = new RepositoryAcquirer(LearningAnalysisMain.CHECKOUT_DIR, options.getNIOThreads());
 			for(String uri : uris) {
-
-				try {
-					/* Build git repository object */
-					gitProjectAnalysis = GitProjectAnalysis.fromURI(uri,
-							LearningAnalysisMain.CHECKOUT_DIR, /* TODO AnnotationMetricsPostProcessor */null, factory);
-
-					/* Perform the analysis (this may take some time) */
-					executor.submit(new GitProjectAnalysisTask(gitProjectAnalysis, latch));
-				} catch (Exception e) {
-					e.printStackTrace(System.err);
-					logger.error("[IMPORTANT] Project " + uri + " threw an exception");
-					logger.error(e);
-					continue;
-				}
+				acquirer.acquire(uri, new RepositoryAcquirer.Listener() {
+					@Override
+					public void acquired(GitProject project) {
+						/* Build git repository object */
+						GitProjectAnalysis projectAnalysis = GitProjectAnalysis.fromGitProject(project,
+								/* TODO AnnotationMetricsPostProcessor */null, factory);
+						projectAnalysis.setLocalityOrder(locality);
+						projectAnalysis.setUseCommitIndex(useCommitIndex);
+						projectAnalysis.setCommitRegistry(registry);
+						projectAnalysis.setHistoryFilter(historyFilter);
+						scheduler.add(projectAnalysis);
+					}
+
+					@Override
+					public void failed(String uri, Exception e) {
+						e.printStackTrace(System.err);
+						logger.error("[IMPORTANT] Project " + uri + " threw an exception");
+						logger.error(e);
+					}
+				});
 			}
 
-			/* Wait for all threads to finish their work */
+			/* Perform the analysis (this may take some time) */
 			try {
-				latch.await();
+				acquirer.close();
+				scheduler.finish();
 			} catch (InterruptedException e) {
 				e.printStackTrace();
 				return;
 			}
 
+			if(registry != null)
+				logger.info("[DEDUPLICATE] " + registry.size() + " distinct commits, " + registry.getHits() + " shared commits not analyzed again");
+
 		}
 		else {
 			System.out.println("No repository given.");
@@ -2,6 +2,8 @@ package commitminer.learn.js;
 
 import org.kohsuke.args4j.Option;
 
+import commitminer.batch.CommitRegistry;
+
 
 public class LearningAnalysisOptions {
 
@@ -26,6 +28,45 @@ public class LearningAnalysisOptions {
 	@Option(name = "-tr", aliases = { "--threads" }, usage = "The number of threads to be used.")
 	private Integer nThreads = 6;
 
+	@Option(name = "-io", aliases = { "--io-threads" }, usage = "The number of repositories to clone or pull at once.")
+	private Integer nIOThreads = 2;
+
+	@Option(name = "-lo", aliases = { "--locality" }, usage = "Analyze each commit just before its first parent where possible, so that consecutive commits read nearby blobs.")
+	private boolean locality = false;
+
+	@Option(name = "-nci", aliases = { "--no-commit-index" }, usage = "Walk the history with JGit instead of reading it from the commit index in each project's .git directory.")
+	private boolean noCommitIndex = false;
+
+	@Option(name = "-pgl", aliases = { "--packed-git-limit" }, usage = "The size of JGit's pack window cache (in MB).")
+	private Integer packedGitLimit = 0;
+
+	@Option(name = "-pgw", aliases = { "--packed-git-window" }, usage = "The size of one pack window (in KB, a power of two).")
+	private Integer packedGitWindowSize = 0;
+
+	@Option(name = "-dbc", aliases = { "--delta-base-cache" }, usage = "The size of JGit's delta base cache (in MB).")
+	private Integer deltaBaseCacheLimit = 0;
+
+	@Option(name = "-pgo", aliases = { "--packed-git-open-files" }, usage = "The number of pack files JGit keeps open.")
+	private Integer packedGitOpenFiles = 0;
+
+	@Option(name = "-dd", aliases = { "--deduplicate" }, usage = "Analyze a commit that is shared by several projects (e.g., forks) only once.")
+	private boolean deduplicate = false;
+
+	@Option(name = "-dup", aliases = { "--duplicates" }, usage = "With --deduplicate, what to write for a commit analyzed by another project: EMIT (the same results, attributed to each project) or SUPPRESS (nothing).")
+	private CommitRegistry.Duplicates duplicates = CommitRegistry.Duplicates.EMIT;
+
+	@Option(name = "-since", aliases = { "--since" }, usage = "Only analyze commits made on or after this date (yyyy-MM-dd).")
+	private String since = null;
+
+	@Option(name = "-until", aliases = { "--until" }, usage = "Only analyze commits made on or before this date (yyyy-MM-dd).")
+	private String until = null;
+
+	@Option(name = "-au", aliases = { "--authors" }, usage = "Only analyze commits by these authors (comma separated names or emails).")
+	private String authors = null;
+
+	@Option(name = "-pa", aliases = { "--paths" }, usage = "Only analyze commits and files under these directories (comma separated, relative to the repository root).")
+	private String paths = null;
+
 	@Option(name = "-rx", aliases = { "--regex" }, usage = "The regular expression to match to the commit message.")
 	private String regex = null;
 
@@ -33,6 +74,58 @@ public class LearningAnalysisOptions {
 		return this.nThreads;
 	}
 
+	public Integer getNIOThreads() {
+		return this.nIOThreads;
+	}
+
+	public boolean getLocality() {
+		return this.locality;
+	}
+
+	public boolean getNoCommitIndex() {
+		return this.noCommitIndex;
+	}
+
+	public Integer getPackedGitLimit() {
+		return this.packedGitLimit;
+	}
+
+	public Integer getPackedGitWindowSize() {
+		return this.packedGitWindowSize;
+	}
+
+	public Integer getDeltaBaseCacheLimit() {
+		return this.deltaBaseCacheLimit;
+	}
+
+	public Integer getPackedGitOpenFiles() {
+		return this.packedGitOpenFiles;
+	}
+
+	public boolean getDeduplicate() {
+		return this.deduplicate;
+	}
+
+	public CommitRegistry.Duplicates getDuplicates() {
+		return this.duplicates;
+	}
+
+	public String getSince() {
+		return this.since;
+	}
+
+	public String getUntil() {
+		return this.until;
+	}
+
+	public String getAuthors() {
+		return this.authors;
+	}
+
+	public String getPaths() {
+		return this.paths;
+	}
+
 	public String getURI() {
 		return this.host;
 	}